@@ -0,0 +1,445 @@
+package org.buildingsmart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.buildingsmart.vo.AttributeStore;
+import org.buildingsmart.vo.IFCVO;
+import org.buildingsmart.vo.SymbolTable;
+
+/*
+ * BoundingBoxes computes the axis aligned bounding box of a product in world coordinates, from the tokens of the parsed
+ * model. The ObjectPlacement is followed through the IfcLocalPlacement chain, and the items of all the representations of
+ * the product are bounded in the placement: extruded profiles (rectangle, circle, ellipse, I-shape and arbitrary closed
+ * profiles), polylines, face based breps and surface models, point lists and triangulated or polygonal face sets, bounding
+ * boxes and swept disks, with mapped items and boolean results resolved to these. Other items, such as revolved solids
+ * and curved surfaces, do not add to the box, so the box of a product made only of them is not known.
+ * The coordinates are in the length unit of the file.
+ *
+ * The usage:
+ * BoundingBoxes boxes = new BoundingBoxes(lines, symbols);
+ * double[] box = new double[6];
+ * if (boxes.compute(product, box))
+ *     ... min x, y, z and max x, y, z of the product ...
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class BoundingBoxes {
+	public static final String GEOMETRY_NS = "http://linkedbuildingdata.net/ifc/geometry#";
+	public static final String BOUNDING_BOX = GEOMETRY_NS + "boundingBox";
+	// deeper placement chains and item graphs are taken as cycles of a broken file
+	private static final int MAX_DEPTH = 64;
+	private static final double[] IDENTITY = { 1, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0 };
+
+	/*
+	 * The parsed lines by their number, null for a line that is not there
+	 */
+	public interface Lines {
+		IFCVO get(long line_num);
+	}
+
+	private final Lines lines;
+	private final SymbolTable symbols;
+	// the world transformation of every IfcLocalPlacement met so far
+	private final Map<Long, double[]> placements = new HashMap<Long, double[]>();
+
+	// the box of the current product
+	private final double[] min = new double[3];
+	private final double[] max = new double[3];
+	private boolean empty;
+
+	public BoundingBoxes(Lines lines, SymbolTable symbols) {
+		this.lines = lines;
+		this.symbols = symbols;
+	}
+
+	/*
+	 * Fills box with the min x, y, z and the max x, y, z of the product. False when none of its items could be bounded.
+	 */
+	public boolean compute(IFCVO product, double[] box) {
+		AttributeStore store = product.getAttributeStore();
+		if (store == null)
+			return false;
+		int from = product.getAttributesFrom();
+		int to = product.getAttributesTo();
+		// IfcProduct: ObjectPlacement and Representation after the attributes of IfcRoot and IfcObject
+		IFCVO shape = get(reference(store, store.attribute(from, to, 6)));
+		if (shape == null)
+			return false;
+		double[] placement = placement(reference(store, store.attribute(from, to, 5)), 0);
+		empty = true;
+		// IfcProductDefinitionShape: Representations, IfcShapeRepresentation: Items
+		for (long representation : references(shape, 2))
+			for (long item : references(get(representation), 3))
+				item(item, placement, 0);
+		if (empty)
+			return false;
+		for (int i = 0; i < 3; i++) {
+			box[i] = min[i];
+			box[i + 3] = max[i];
+		}
+		return true;
+	}
+
+	/*
+	 * The world transformation of an IfcLocalPlacement: PlacementRelTo, RelativePlacement
+	 */
+	private double[] placement(long line, int depth) {
+		double[] m = placements.get(line);
+		if (m != null)
+			return m;
+		IFCVO vo = get(line);
+		if (vo == null || depth > MAX_DEPTH || !"IFCLOCALPLACEMENT".equals(name(vo)))
+			return IDENTITY;
+		AttributeStore store = vo.getAttributeStore();
+		long relativeTo = reference(store, store.attribute(vo.getAttributesFrom(), vo.getAttributesTo(), 0));
+		double[] parent = relativeTo < 0 ? IDENTITY : placement(relativeTo, depth + 1);
+		m = multiply(parent, axisPlacement(reference(store, store.attribute(vo.getAttributesFrom(), vo.getAttributesTo(), 1))));
+		placements.put(line, m);
+		return m;
+	}
+
+	/*
+	 * IfcAxis2Placement3D: Location, Axis, RefDirection, and IfcAxis2Placement2D: Location, RefDirection
+	 */
+	private double[] axisPlacement(long line) {
+		IFCVO vo = get(line);
+		if (vo == null)
+			return IDENTITY;
+		String type = name(vo);
+		double[] location = point(reference(vo, 0));
+		if ("IFCAXIS2PLACEMENT3D".equals(type))
+			return frame(direction(reference(vo, 1)), direction(reference(vo, 2)), null, location, 1, 1, 1);
+		if ("IFCAXIS2PLACEMENT2D".equals(type))
+			return frame(null, direction(reference(vo, 1)), null, location, 1, 1, 1);
+		return IDENTITY;
+	}
+
+	/*
+	 * IfcCartesianTransformationOperator3D: Axis1, Axis2, LocalOrigin, Scale, Axis3, and Scale2, Scale3 when it is non
+	 * uniform. The 2D operators have only the first four.
+	 */
+	private double[] transformationOperator(long line) {
+		IFCVO vo = get(line);
+		if (vo == null)
+			return IDENTITY;
+		String type = name(vo);
+		double scale = number(vo, 3, 1);
+		boolean nonUniform = type.endsWith("NONUNIFORM");
+		boolean threeD = type.startsWith("IFCCARTESIANTRANSFORMATIONOPERATOR3D");
+		double[] axis3 = threeD ? direction(reference(vo, 4)) : null;
+		return frame(axis3, direction(reference(vo, 0)), direction(reference(vo, 1)), point(reference(vo, 2)), scale,
+				nonUniform ? number(vo, threeD ? 5 : 4, scale) : scale, nonUniform && threeD ? number(vo, 6, scale) : scale);
+	}
+
+	/*
+	 * A right handed frame from the z axis and the x axis as EXPRESS defines it: x is made perpendicular to z, y is z x x.
+	 * A given y only decides the direction of y when there is no z.
+	 */
+	private static double[] frame(double[] z, double[] x, double[] y, double[] origin, double sx, double sy, double sz) {
+		double[] zz = normalize(z == null ? new double[] { 0, 0, 1 } : z.clone());
+		double[] xx = x == null ? new double[] { 1, 0, 0 } : x.clone();
+		double d = dot(xx, zz);
+		for (int i = 0; i < 3; i++)
+			xx[i] -= d * zz[i];
+		normalize(xx);
+		double[] yy = cross(zz, xx);
+		if (z == null && y != null && dot(yy, y) < 0) {
+			for (int i = 0; i < 3; i++) {
+				yy[i] = -yy[i];
+				zz[i] = -zz[i];
+			}
+		}
+		double[] o = origin == null ? new double[3] : origin;
+		return new double[] { xx[0] * sx, xx[1] * sx, xx[2] * sx, yy[0] * sy, yy[1] * sy, yy[2] * sy, zz[0] * sz, zz[1] * sz, zz[2] * sz, o[0], o[1], o[2] };
+	}
+
+	/*
+	 * Adds the points of a representation item, transformed by m, to the box
+	 */
+	private void item(long line, double[] m, int depth) {
+		IFCVO vo = get(line);
+		if (vo == null || depth > MAX_DEPTH)
+			return;
+		String type = name(vo);
+		if (type.startsWith("IFCEXTRUDEDAREASOLID")) {
+			// SweptArea, Position, ExtrudedDirection, Depth
+			double[] local = multiply(m, axisPlacement(reference(vo, 1)));
+			double[] direction = direction(reference(vo, 2));
+			double depthOfSolid = number(vo, 3, 0);
+			List<double[]> profile = new ArrayList<double[]>();
+			profile(reference(vo, 0), profile);
+			for (double[] p : profile) {
+				add(local, p[0], p[1], 0);
+				if (direction != null)
+					add(local, p[0] + direction[0] * depthOfSolid, p[1] + direction[1] * depthOfSolid, direction[2] * depthOfSolid);
+			}
+		} else if (type.equals("IFCPOLYLINE") || type.equals("IFCPOLYLOOP")) {
+			for (long point : references(vo, 0))
+				add(m, point(point));
+		} else if (type.equals("IFCCARTESIANPOINT")) {
+			add(m, point(line));
+		} else if (type.startsWith("IFCCARTESIANPOINTLIST")) {
+			for (double[] p : coordinates(vo))
+				add(m, p);
+		} else if (type.equals("IFCTRIANGULATEDFACESET") || type.equals("IFCPOLYGONALFACESET") || type.equals("IFCINDEXEDPOLYCURVE")) {
+			// Coordinates, or Points of the curve
+			item(reference(vo, 0), m, depth + 1);
+		} else if (type.startsWith("IFCFACETEDBREP") || type.equals("IFCMANIFOLDSOLIDBREP") || type.startsWith("IFCADVANCEDBREP")
+				|| type.equals("IFCFACEOUTERBOUND") || type.equals("IFCFACEBOUND")) {
+			// Outer of a brep, Bound of a face bound
+			item(reference(vo, 0), m, depth + 1);
+		} else if (type.equals("IFCCLOSEDSHELL") || type.equals("IFCOPENSHELL") || type.equals("IFCCONNECTEDFACESET")
+				|| type.equals("IFCFACE") || type.equals("IFCFACESURFACE") || type.equals("IFCSHELLBASEDSURFACEMODEL")
+				|| type.equals("IFCFACEBASEDSURFACEMODEL") || type.equals("IFCGEOMETRICSET") || type.equals("IFCGEOMETRICCURVESET")) {
+			// the faces of a shell, the bounds of a face, the shells or the elements of a set
+			for (long part : references(vo, 0))
+				item(part, m, depth + 1);
+		} else if (type.equals("IFCMAPPEDITEM")) {
+			// MappingSource (IfcRepresentationMap: MappingOrigin, MappedRepresentation), MappingTarget
+			IFCVO map = get(reference(vo, 0));
+			if (map == null)
+				return;
+			double[] mapped = multiply(multiply(m, transformationOperator(reference(vo, 1))), axisPlacement(reference(map, 0)));
+			for (long part : references(get(reference(map, 1)), 3))
+				item(part, mapped, depth + 1);
+		} else if (type.equals("IFCBOOLEANRESULT") || type.equals("IFCBOOLEANCLIPPINGRESULT")) {
+			// Operator, FirstOperand, SecondOperand: a difference or an intersection is not larger than the first operand
+			item(reference(vo, 1), m, depth + 1);
+			String operator = string(vo, 0);
+			if (operator != null && operator.contains("UNION"))
+				item(reference(vo, 2), m, depth + 1);
+		} else if (type.equals("IFCBOUNDINGBOX")) {
+			// Corner, XDim, YDim, ZDim
+			double[] corner = point(reference(vo, 0));
+			if (corner == null)
+				return;
+			double x = number(vo, 1, 0), y = number(vo, 2, 0), z = number(vo, 3, 0);
+			for (int i = 0; i < 8; i++)
+				add(m, corner[0] + ((i & 1) == 0 ? 0 : x), corner[1] + ((i & 2) == 0 ? 0 : y), corner[2] + ((i & 4) == 0 ? 0 : z));
+		} else if (type.equals("IFCSWEPTDISKSOLID")) {
+			// Directrix, Radius: the box of the directrix grown by the radius
+			double radius = number(vo, 1, 0);
+			double[] outer = new double[12];
+			for (int i = 0; i < 8; i++) {
+				System.arraycopy(m, 0, outer, 0, 12);
+				for (int k = 0; k < 3; k++)
+					outer[9 + k] += (((i >> k) & 1) == 0 ? -radius : radius);
+				item(reference(vo, 0), outer, depth + 1);
+			}
+		}
+	}
+
+	/*
+	 * The 2D points that bound a profile, in the coordinates of the swept solid
+	 */
+	private void profile(long line, List<double[]> points) {
+		IFCVO vo = get(line);
+		if (vo == null)
+			return;
+		String type = name(vo);
+		if (type.startsWith("IFCARBITRARY")) {
+			// ProfileType, ProfileName, OuterCurve
+			IFCVO curve = get(reference(vo, 2));
+			if (curve == null)
+				return;
+			if ("IFCPOLYLINE".equals(name(curve))) {
+				for (long point : references(curve, 0)) {
+					double[] p = point(point);
+					if (p != null)
+						points.add(p);
+				}
+			} else if ("IFCINDEXEDPOLYCURVE".equals(name(curve))) {
+				IFCVO list = get(reference(curve, 0));
+				if (list != null)
+					for (double[] p : coordinates(list))
+						points.add(p);
+			}
+			return;
+		}
+		// ProfileType, ProfileName, Position and the dimensions of a parameterized profile
+		double halfX, halfY;
+		if (type.startsWith("IFCRECTANGLE") || type.equals("IFCROUNDEDRECTANGLEPROFILEDEF")) {
+			halfX = number(vo, 3, 0) / 2;
+			halfY = number(vo, 4, 0) / 2;
+		} else if (type.startsWith("IFCCIRCLE")) {
+			halfX = halfY = number(vo, 3, 0);
+		} else if (type.equals("IFCELLIPSEPROFILEDEF")) {
+			halfX = number(vo, 3, 0);
+			halfY = number(vo, 4, 0);
+		} else if (type.equals("IFCISHAPEPROFILEDEF") || type.equals("IFCASYMMETRICISHAPEPROFILEDEF")) {
+			halfX = number(vo, 3, 0) / 2;
+			halfY = number(vo, 4, 0) / 2;
+		} else
+			return;
+		double[] position = axisPlacement(reference(vo, 2));
+		for (int i = 0; i < 4; i++) {
+			double x = (i & 1) == 0 ? -halfX : halfX;
+			double y = (i & 2) == 0 ? -halfY : halfY;
+			points.add(new double[] { position[0] * x + position[3] * y + position[9], position[1] * x + position[4] * y + position[10] });
+		}
+	}
+
+	// IfcCartesianPointList2D and 3D: CoordList
+	private List<double[]> coordinates(IFCVO vo) {
+		List<double[]> result = new ArrayList<double[]>();
+		AttributeStore store = vo.getAttributeStore();
+		int list = store.attribute(vo.getAttributesFrom(), vo.getAttributesTo(), 0);
+		if (list < 0 || store.kind(list) != AttributeStore.LIST)
+			return result;
+		int end = store.next(list);
+		for (int i = list + 1; i < end; i = store.next(i)) {
+			double[] p = numbers(store, i);
+			if (p != null)
+				result.add(p);
+		}
+		return result;
+	}
+
+	private void add(double[] m, double[] p) {
+		if (p != null)
+			add(m, p[0], p[1], p[2]);
+	}
+
+	private void add(double[] m, double x, double y, double z) {
+		for (int i = 0; i < 3; i++) {
+			double v = m[i] * x + m[3 + i] * y + m[6 + i] * z + m[9 + i];
+			if (empty || v < min[i])
+				min[i] = v;
+			if (empty || v > max[i])
+				max[i] = v;
+		}
+		empty = false;
+	}
+
+	// IfcCartesianPoint: Coordinates, a 2D point has z = 0
+	private double[] point(long line) {
+		IFCVO vo = get(line);
+		if (vo == null || vo.getAttributeStore() == null)
+			return null;
+		return numbers(vo.getAttributeStore(), vo.getAttributeStore().attribute(vo.getAttributesFrom(), vo.getAttributesTo(), 0));
+	}
+
+	// IfcDirection: DirectionRatios, as a unit vector. The ratios only give the direction, (0, 0, 2) is (0, 0, 1).
+	private double[] direction(long line) {
+		double[] ratios = point(line);
+		return ratios == null ? null : normalize(ratios);
+	}
+
+	// the first three numbers of a list, missing ones are 0
+	private static double[] numbers(AttributeStore store, int list) {
+		if (list < 0 || store.kind(list) != AttributeStore.LIST)
+			return null;
+		double[] result = new double[3];
+		int end = store.next(list);
+		int n = 0;
+		for (int i = list + 1; i < end && n < 3; i = store.next(i)) {
+			if (store.kind(i) != AttributeStore.STRING)
+				return null;
+			try {
+				result[n++] = Double.parseDouble(store.string(i));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return result;
+	}
+
+	private static double number(IFCVO vo, int n, double missing) {
+		AttributeStore store = vo.getAttributeStore();
+		int index = store.attribute(vo.getAttributesFrom(), vo.getAttributesTo(), n);
+		if (index < 0 || store.kind(index) != AttributeStore.STRING)
+			return missing;
+		try {
+			return Double.parseDouble(store.string(index));
+		} catch (NumberFormatException e) {
+			return missing;
+		}
+	}
+
+	private static String string(IFCVO vo, int n) {
+		AttributeStore store = vo.getAttributeStore();
+		int index = store.attribute(vo.getAttributesFrom(), vo.getAttributesTo(), n);
+		return index < 0 || store.kind(index) != AttributeStore.STRING ? null : store.string(index);
+	}
+
+	private static long reference(IFCVO vo, int n) {
+		if (vo == null || vo.getAttributeStore() == null)
+			return -1;
+		AttributeStore store = vo.getAttributeStore();
+		return reference(store, store.attribute(vo.getAttributesFrom(), vo.getAttributesTo(), n));
+	}
+
+	private static long reference(AttributeStore store, int index) {
+		return index < 0 || store.kind(index) != AttributeStore.REF ? -1 : store.reference(index);
+	}
+
+	// the references in the n-th attribute, a list
+	private static long[] references(IFCVO vo, int n) {
+		if (vo == null || vo.getAttributeStore() == null)
+			return new long[0];
+		AttributeStore store = vo.getAttributeStore();
+		int list = store.attribute(vo.getAttributesFrom(), vo.getAttributesTo(), n);
+		if (list < 0 || store.kind(list) != AttributeStore.LIST)
+			return new long[0];
+		long[] result = new long[store.listLength(list)];
+		int count = 0;
+		int end = store.next(list);
+		for (int i = list + 1; i < end; i = store.next(i))
+			if (store.kind(i) == AttributeStore.REF)
+				result[count++] = store.reference(i);
+		return count == result.length ? result : Arrays.copyOf(result, count);
+	}
+
+	private IFCVO get(long line) {
+		return line < 0 ? null : lines.get(line);
+	}
+
+	private String name(IFCVO vo) {
+		return ExpressReader.formatClassName(symbols.getName(vo.getType()));
+	}
+
+	// a applied after b
+	private static double[] multiply(double[] a, double[] b) {
+		double[] r = new double[12];
+		for (int c = 0; c < 4; c++)
+			for (int i = 0; i < 3; i++)
+				r[3 * c + i] = a[i] * b[3 * c] + a[3 + i] * b[3 * c + 1] + a[6 + i] * b[3 * c + 2] + (c == 3 ? a[9 + i] : 0);
+		return r;
+	}
+
+	private static double[] normalize(double[] v) {
+		double length = Math.sqrt(dot(v, v));
+		if (length > 0)
+			for (int i = 0; i < 3; i++)
+				v[i] /= length;
+		return v;
+	}
+
+	private static double dot(double[] a, double[] b) {
+		return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+	}
+
+	private static double[] cross(double[] a, double[] b) {
+		return new double[] { a[1] * b[2] - a[2] * b[1], a[2] * b[0] - a[0] * b[2], a[0] * b[1] - a[1] * b[0] };
+	}
+}
@@ -0,0 +1,151 @@
+package org.buildingsmart;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.jena.graph.Node;
+
+/*
+ * ConcurrentFanOutSink passes every triple to several sinks like FanOutTripleSink, but each sink runs on a writer thread
+ * of its own, so writing a file in several formats takes about as long as writing the slowest one. The triples are
+ * handed over in batches of BATCH_SIZE, one batch is shared by all the writers, and at most QUEUE_SIZE batches wait for a
+ * writer, which bounds the memory when a writer is slower than the conversion.
+ * close() waits for the writers and then closes, on the writer thread, the sinks that are Closeable. When a writer fails
+ * the next triple() throws, and close() throws the failure as an IOException.
+ *
+ * The usage:
+ * ConcurrentFanOutSink sink = new ConcurrentFanOutSink(turtleSink, rdfXmlSink);
+ * engine.convert(sink);
+ * sink.close();
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class ConcurrentFanOutSink implements TripleSink {
+	private static final int BATCH_SIZE = 8192;
+	private static final int QUEUE_SIZE = 16;
+	private static final Node[] END = new Node[0];
+
+	private final Writer[] writers;
+	private Node[] batch = new Node[3 * BATCH_SIZE];
+	private int size = 0;
+
+	public ConcurrentFanOutSink(TripleSink... sinks) {
+		writers = new Writer[sinks.length];
+		for (int i = 0; i < sinks.length; i++) {
+			writers[i] = new Writer(sinks[i]);
+			writers[i].setName("triple writer " + (i + 1));
+			writers[i].setDaemon(true);
+			writers[i].start();
+		}
+	}
+
+	@Override
+	public void triple(Node subject, Node predicate, Node object) {
+		batch[size++] = subject;
+		batch[size++] = predicate;
+		batch[size++] = object;
+		if (size == batch.length) {
+			try {
+				publish(batch);
+			} catch (IOException e) {
+				throw new IllegalStateException(e.getMessage(), e.getCause());
+			}
+			batch = new Node[3 * BATCH_SIZE];
+			size = 0;
+		}
+	}
+
+	/*
+	 * Writes the rest of the triples, waits for the writers and closes the sinks
+	 */
+	public void close() throws IOException {
+		IOException failed = null;
+		if (size > 0) {
+			Node[] last = new Node[size];
+			System.arraycopy(batch, 0, last, 0, size);
+			size = 0;
+			try {
+				publish(last);
+			} catch (IOException e) {
+				failed = e;
+			}
+		}
+		// every writer gets the end, a failed one takes it from its queue too
+		try {
+			for (Writer writer : writers)
+				writer.queue.put(END);
+			for (Writer writer : writers)
+				writer.join();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		}
+		if (failed != null)
+			throw failed;
+		for (Writer writer : writers)
+			if (writer.failure != null)
+				throw new IOException(writer.getName() + " failed", writer.failure);
+	}
+
+	private void publish(Node[] triples) throws IOException {
+		for (Writer writer : writers) {
+			if (writer.failure != null)
+				throw new IOException(writer.getName() + " failed", writer.failure);
+			try {
+				writer.queue.put(triples);
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+		}
+	}
+
+	private static class Writer extends Thread {
+		private final TripleSink sink;
+		private final BlockingQueue<Node[]> queue = new ArrayBlockingQueue<Node[]>(QUEUE_SIZE);
+		private volatile Throwable failure = null;
+
+		Writer(TripleSink sink) {
+			this.sink = sink;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Node[] triples = queue.take();
+					if (triples == END)
+						break;
+					for (int i = 0; i < triples.length; i += 3)
+						sink.triple(triples[i], triples[i + 1], triples[i + 2]);
+				}
+				if (sink instanceof Closeable)
+					((Closeable) sink).close();
+			} catch (Throwable t) {
+				failure = t;
+				// takes the batches that are still put, so the conversion is not blocked until it sees the failure
+				try {
+					while (queue.take() != END)
+						;
+				} catch (InterruptedException e) {
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package org.buildingsmart;
+
+import java.nio.charset.Charset;
+
+/*
+ * ContentHash is the 128 bit MurmurHash3 (x64 variant) of a byte array or of the UTF-8 bytes of a String. The result does
+ * not depend on the JVM or the run, so it can name a resource by its content.
+ *
+ * The usage:
+ * String name = ContentHash.hex(key);
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class ContentHash {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private ContentHash() {
+	}
+
+	/*
+	 * The hash as 32 lower case hex digits
+	 */
+	public static String hex(String text) {
+		long[] hash = hash(text.getBytes(UTF8), 0);
+		char[] chars = new char[32];
+		for (int i = 0; i < 16; i++) {
+			int b = (int) (hash[i >> 3] >>> (56 - 8 * (i & 7))) & 0xFF;
+			chars[2 * i] = HEX[b >>> 4];
+			chars[2 * i + 1] = HEX[b & 0xF];
+		}
+		return new String(chars);
+	}
+
+	/*
+	 * The hash as two longs, {h1, h2}
+	 */
+	// the switch over the tail bytes falls through on purpose, as in the reference implementation
+	@SuppressWarnings("fallthrough")
+	public static long[] hash(byte[] data, long seed) {
+		int length = data.length;
+		int blocks = length >>> 4;
+		long h1 = seed;
+		long h2 = seed;
+
+		for (int i = 0; i < blocks; i++) {
+			long k1 = getLong(data, i << 4);
+			long k2 = getLong(data, (i << 4) + 8);
+
+			h1 ^= scramble1(k1);
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52dce729;
+
+			h2 ^= scramble2(k2);
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x38495ab5;
+		}
+
+		// the last 0 to 15 bytes
+		long k1 = 0;
+		long k2 = 0;
+		int tail = blocks << 4;
+		switch (length & 15) {
+		case 15: k2 ^= (long) (data[tail + 14] & 0xFF) << 48;
+		case 14: k2 ^= (long) (data[tail + 13] & 0xFF) << 40;
+		case 13: k2 ^= (long) (data[tail + 12] & 0xFF) << 32;
+		case 12: k2 ^= (long) (data[tail + 11] & 0xFF) << 24;
+		case 11: k2 ^= (long) (data[tail + 10] & 0xFF) << 16;
+		case 10: k2 ^= (long) (data[tail + 9] & 0xFF) << 8;
+		case 9:
+			k2 ^= data[tail + 8] & 0xFF;
+			h2 ^= scramble2(k2);
+		case 8: k1 ^= (long) (data[tail + 7] & 0xFF) << 56;
+		case 7: k1 ^= (long) (data[tail + 6] & 0xFF) << 48;
+		case 6: k1 ^= (long) (data[tail + 5] & 0xFF) << 40;
+		case 5: k1 ^= (long) (data[tail + 4] & 0xFF) << 32;
+		case 4: k1 ^= (long) (data[tail + 3] & 0xFF) << 24;
+		case 3: k1 ^= (long) (data[tail + 2] & 0xFF) << 16;
+		case 2: k1 ^= (long) (data[tail + 1] & 0xFF) << 8;
+		case 1:
+			k1 ^= data[tail] & 0xFF;
+			h1 ^= scramble1(k1);
+		}
+
+		h1 ^= length;
+		h2 ^= length;
+		h1 += h2;
+		h2 += h1;
+		h1 = fmix(h1);
+		h2 = fmix(h2);
+		h1 += h2;
+		h2 += h1;
+		return new long[] { h1, h2 };
+	}
+
+	private static long scramble1(long k) {
+		k *= C1;
+		k = Long.rotateLeft(k, 31);
+		return k * C2;
+	}
+
+	private static long scramble2(long k) {
+		k *= C2;
+		k = Long.rotateLeft(k, 33);
+		return k * C1;
+	}
+
+	// little endian, as in the reference implementation
+	private static long getLong(byte[] data, int offset) {
+		long value = 0;
+		for (int i = 7; i >= 0; i--)
+			value = (value << 8) | (data[offset + i] & 0xFF);
+		return value;
+	}
+
+	/*
+	 * The block steps of the two halves without the sum of the other half, for hashing a sequence of longs one at a time.
+	 * The halves are finished with fmix().
+	 */
+	public static long mix1(long h, long k) {
+		h ^= scramble1(k);
+		h = Long.rotateLeft(h, 27);
+		return h * 5 + 0x52dce729;
+	}
+
+	public static long mix2(long h, long k) {
+		h ^= scramble2(k);
+		h = Long.rotateLeft(h, 31);
+		return h * 5 + 0x38495ab5;
+	}
+
+	public static long fmix(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+}
@@ -0,0 +1,1299 @@
+package org.buildingsmart;
+
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.ontology.OntModel;
+import org.bimserver.plugins.serializers.ProgressReporter;
+import org.buildingsmart.ConversionPlan.AttributePlan;
+import org.buildingsmart.ConversionPlan.EntityPlan;
+import org.buildingsmart.ConversionPlan.RangePlan;
+import org.buildingsmart.vo.AttributeStore;
+import org.buildingsmart.vo.EntityVO;
+import org.buildingsmart.vo.IFCVO;
+import org.buildingsmart.vo.SymbolTable;
+import org.buildingsmart.vo.TypeVO;
+
+/*
+ * ConversionEngine reads an IFC file and writes its triples into a TripleSink. IfcConvertor and IfcConvertorStream only set
+ * up the output (a Jena Model or a StreamRDF writer) and hand the conversion to an engine, so both produce their triples
+ * with the same code. A file is read in two passes without keeping it in memory, or into memory first (see
+ * ConversionOptions.isInMemory()).
+ *
+ * The usage:
+ * ConversionEngine engine = new ConversionEngine(ontModel, expressModel, listModel, inputStream, baseURI, ent, typ, ontNS);
+ * engine.setOptions(options);
+ * engine.convert(new StreamTripleSink(writer));
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class ConversionEngine {
+
+	//input variables
+	private final String baseURI;
+	private static final Node BOOLEAN_TRUE = NodeFactory.createLiteral("true", XSDDatatype.XSDboolean);
+	private static final Node BOOLEAN_FALSE = NodeFactory.createLiteral("false", XSDDatatype.XSDboolean);
+	
+	//EXPRESS basis
+	private final Map<String, EntityVO> ent;
+	private final Map<String, TypeVO> typ;
+	
+	//conversion variables
+	private int IDcounter = 0;	
+	private EntityTable linemap = new EntityTable();
+	// streaming mode: type and kept line of every line number, instead of the linemap
+	private EntityIndex index = null;
+	private final SymbolTable symbols = new SymbolTable();
+	// the lines that the type filter leaves out, null without a filter
+	private EntityTypeFilter typeFilter = null;
+	private EntityIndex pruned = null;
+	// the property sets for the flattened property triples, null when they are not written
+	private PropertySetIndex propertySets = null;
+	// the references with an inverse attribute, null when the inverse triples are not written
+	private InverseIndex inverses = null;
+	// the spatial decomposition and containment, null when its closure is not written
+	private SpatialIndex spatial = null;
+		
+	private TripleSink sink;
+	private final InputStream inputStream;
+	
+	private boolean logToFile = false;
+	private BufferedWriter bw;
+
+	//for removing duplicates in line entries
+	private boolean resolveDuplicates = true;
+	// line number of a duplicate -> the IFCVO that is kept in its place
+	private EntityTable listOfDuplicateLineEntries = new EntityTable();
+	// the kept lines with the number of their duplicates, see DuplicateFinder.getMergedCounts(), null when the duplicates
+	// are not resolved
+	private long[] mergedCounts = null;
+	// the triples the duplicates would have written, counted as those of their kept line
+	private final AtomicLong savedTriples = new AtomicLong();
+	
+	private ProgressReporter progressReporter;
+	private ConversionOptions options = new ConversionOptions();
+	// the ontology lookups of every attribute, compiled once per schema
+	private final ConversionPlan plan;
+	
+	public ConversionEngine(OntModel ontModel, OntModel expressModel, OntModel listModel, InputStream inputStream, String baseURI, Map<String, EntityVO> ent, Map<String, TypeVO> typ, String ontNS){
+		this.inputStream = inputStream;
+		this.baseURI = baseURI;
+		this.ent = ent;
+		this.typ = typ;
+		this.plan = ConversionPlan.forSchema(ontModel, expressModel, listModel, ontNS, ent, typ);
+	}
+	
+	/*
+	 * The log file of the reader, null when it does not write one
+	 */
+	public void setLog(BufferedWriter bw){
+		this.bw = bw;
+		this.logToFile = bw != null;
+	}
+	
+	/*
+	 * Lines that are equal after the '#id=' are converted once, the references to the others point to the kept line.
+	 * On by default.
+	 */
+	public void setResolveDuplicates(boolean resolveDuplicates){
+		this.resolveDuplicates = resolveDuplicates;
+	}
+
+	private void updateProgress(int progress, int max) {
+		if (progressReporter != null) {
+			progressReporter.update(progress, max);
+		}
+	}
+	
+	private void updateProgress(String title) {
+		if (progressReporter != null) {
+			progressReporter.setTitle(title);
+		}
+	}
+	
+	public void convert(TripleSink sink) throws IOException{
+		this.sink = sink;
+		updateProgress(-1, 100);
+		updateProgress("Reading IFC model");
+		if (options.getIncludeTypes() != null || options.getExcludeTypes() != null) {
+			typeFilter = new EntityTypeFilter(ent, options.getIncludeTypes(), options.getExcludeTypes());
+			pruned = new EntityIndex();
+		}
+		if (options.isFlattenPsets() || options.isPsetsOnly())
+			propertySets = new PropertySetIndex(symbols);
+		if (options.getInverses() != null)
+			inverses = new InverseIndex(options.getInverses());
+		if (options.isSpatialClosure())
+			spatial = new SpatialIndex(symbols);
+
+		if (inputStream instanceof FileInputStream && !options.isInMemory() && !options.isParallelParse() && !options.isParallelEmit() && !options.isBoundingBoxes()) {
+			streamModel();
+		} else {
+			//Read the whole file into a linemap Map object
+			readModel();
+			symbols.bind(ent, typ);
+
+			updateProgress("Resolving duplicates");
+
+			System.out.println("model parsed");
+			reportPruned();
+
+			// before the duplicates are removed, a property set or a relation may refer to any of them
+			if (propertySets != null || spatial != null) {
+				for (IFCVO vo : linemap) {
+					if (propertySets != null)
+						propertySets.add(vo);
+					if (spatial != null)
+						spatial.add(vo);
+				}
+			}
+
+			if (resolveDuplicates)
+				resolveDuplicates();
+
+			updateProgress("Creating instances");
+
+			//make new instances in the model, the references of each entry are mapped to IFCVOs on the way
+			System.out.println("duplicates resolved, now creating instances");
+			if (!options.isPsetsOnly())
+				createInstances();
+		}
+		if (propertySets != null) {
+			updateProgress("Flattening property sets");
+			new InstanceWriter(newEmitter()).createPropertySetTriples();
+		}
+		if (inverses != null) {
+			updateProgress("Writing inverse relationships");
+			new InstanceWriter(newEmitter()).createInverseTriples();
+		}
+		if (spatial != null) {
+			updateProgress("Writing the spatial containment");
+			new InstanceWriter(newEmitter()).createSpatialTriples();
+		}
+		if (options.isBoundingBoxes()) {
+			updateProgress("Writing the bounding boxes");
+			new InstanceWriter(newEmitter()).createBoundingBoxTriples();
+		}
+		
+		// Save memory
+		linemap.clear();
+		linemap = null;
+		index = null;
+		pruned = null;
+		propertySets = null;
+		inverses = null;
+		spatial = null;
+
+		updateProgress(100, 100);
+	}
+	
+	/*
+	 * Converts a file without keeping it in memory. The first pass only records the type and a content fingerprint of every
+	 * line, which is all that a reference needs for its URI and for resolving duplicate lines. The second pass reads the file
+	 * again and writes the triples of each line as soon as it is parsed.
+	 */
+	private void streamModel() throws IOException {
+		FileChannel channel = ((FileInputStream) inputStream).getChannel();
+		long start = channel.position();
+		index = new EntityIndex();
+		DuplicateFinder finder = resolveDuplicates ? new DuplicateFinder() : null;
+		try {
+			StepTokenizer tokenizer = new StepTokenizer(inputStream, symbols);
+			tokenizer.setReuseStore(true);
+			tokenizer.setTypeFilter(typeFilter);
+			IFCVO ifcvo;
+			while ((ifcvo = tokenizer.nextEntity()) != null) {
+				IDcounter++;
+				if (prune(ifcvo))
+					continue;
+				// every line is its own canonical line until the duplicates are resolved
+				index.put(ifcvo.getLine_num(), ifcvo.getType(), ifcvo.getLine_num());
+				// the finder copies what it needs, the tokens are reused for the next line
+				if (finder != null)
+					finder.add(ifcvo);
+				if (propertySets != null)
+					propertySets.add(ifcvo);
+				if (spatial != null)
+					spatial.add(ifcvo);
+			}
+			// the first tokenizer is not closed, that would close the file
+			symbols.bind(ent, typ);
+			int lines = IDcounter;
+
+			updateProgress("Resolving duplicates");
+			System.out.println("model indexed");
+			reportPruned();
+			if (resolveDuplicates) {
+				reportDuplicates(finder.resolve(options.isStructuralDuplicates()), finder);
+				mergedCounts = finder.getMergedCounts();
+				index.resolveDuplicates(finder);
+				finder = null;
+			}
+
+			if (options.isPsetsOnly())
+				return;
+
+			updateProgress("Creating instances");
+			System.out.println("duplicates resolved, now creating instances");
+			channel.position(start);
+			tokenizer = new StepTokenizer(inputStream, symbols);
+			tokenizer.setReuseStore(true);
+			tokenizer.setTypeFilter(typeFilter);
+			// a pruned line is not in the index, so it is not its own kept line
+			TripleEmitter emitter = newEmitter();
+			InstanceWriter writer = new InstanceWriter(emitter);
+			int i = 0;
+			while ((ifcvo = tokenizer.nextEntity()) != null) {
+				if (index.getCanonical(ifcvo.getLine_num()) == ifcvo.getLine_num())
+					writer.createInstance(ifcvo);
+				i++;
+				updateProgress(i, lines);
+			}
+			reportSavedTriples(emitter.getCount());
+		} finally {
+			inputStream.close();
+		}
+	}
+	
+	private void readModel() {
+		if (options.isParallelParse() && inputStream instanceof FileInputStream) {
+			readModelParallel();
+			return;
+		}
+		readModelSequential();
+	}
+	
+	private void readModelSequential() {
+		try {
+			StepTokenizer tokenizer = new StepTokenizer(inputStream, symbols);
+			tokenizer.setTypeFilter(typeFilter);
+			try {
+				IFCVO ifcvo;
+				//the whole IFC gets parsed, and everything ends up as IFCVO objects in the EntityTable linemap variable
+				while ((ifcvo = tokenizer.nextEntity()) != null) {
+					IDcounter++;
+					if (!prune(ifcvo))
+						linemap.put(ifcvo.getLine_num(), ifcvo);
+				}
+			} finally {
+				tokenizer.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	private void readModelParallel() {
+		boolean sequential = false;
+		try {
+			ParallelStepParser parser = new ParallelStepParser((FileInputStream) inputStream, options.getThreads(), symbols);
+			parser.setTypeFilter(typeFilter);
+			try {
+				List<List<IFCVO>> ranges = parser.parse();
+				if (ranges == null) {
+					// nothing of the ranges is kept, the file is parsed again from the same position
+					sequential = true;
+					System.err.println("the parallel parse found a range that does not end on a statement, parsing the file sequentially");
+					if(logToFile) bw.write("the parallel parse found a range that does not end on a statement, parsing the file sequentially \r\n");
+				} else {
+					//the ranges come back in file order, so a repeated line number overwrites the earlier one as in readModel()
+					for (List<IFCVO> range : ranges) {
+						for (IFCVO ifcvo : range) {
+							IDcounter++;
+							if (!prune(ifcvo))
+								linemap.put(ifcvo.getLine_num(), ifcvo);
+						}
+					}
+				}
+			} finally {
+				if (!sequential)
+					inputStream.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if (sequential)
+			readModelSequential();
+	}
+	
+	private void resolveDuplicates() throws IOException{
+		DuplicateFinder finder = new DuplicateFinder();
+		for (IFCVO vo : linemap)
+			finder.add(vo);
+		reportDuplicates(finder.resolve(options.isStructuralDuplicates()), finder);
+		mergedCounts = finder.getMergedCounts();
+		List<IFCVO> entriesToRemove=new ArrayList<IFCVO>();
+		for (IFCVO vo : linemap) {
+			long kept = finder.getCanonical(vo.getLine_num());
+			if (kept != vo.getLine_num()) {
+				//found duplicate
+				entriesToRemove.add(vo);
+				listOfDuplicateLineEntries.put(vo.getLine_num(), linemap.get(kept));
+			}
+		}
+		for(IFCVO x : entriesToRemove){
+			linemap.remove(x.getLine_num());
+		}
+	}
+	
+	/*
+	 * Records the line when the type filter leaves it out. The pruned lines are not resolved or converted, and the references
+	 * to them are dropped.
+	 */
+	private boolean prune(IFCVO ifcvo) {
+		if (typeFilter == null || typeFilter.accepts(ifcvo.getType(), symbols))
+			return false;
+		pruned.put(ifcvo.getLine_num(), ifcvo.getType(), ifcvo.getLine_num());
+		return true;
+	}
+	
+	private boolean isPruned(long line_num) {
+		return pruned != null && pruned.contains(line_num);
+	}
+	
+	private void reportPruned() throws IOException{
+		if (pruned == null)
+			return;
+		if(logToFile) bw.write("pruned " + pruned.size() + " lines by their type \r\n");
+		System.out.println("pruned " + pruned.size() + " of " + IDcounter + " lines by their type");
+	}
+	
+	/*
+	 * The share of the entity lines that were merged into another line, the triples they leave out are reported after the
+	 * instances are written, see reportSavedTriples()
+	 */
+	private void reportDuplicates(int duplicates, DuplicateFinder finder) throws IOException{
+		String message = String.format("removed %d of %d entity lines as duplicates (%.1f%% of the lines)", duplicates, finder.size(), finder.size() == 0 ? 0.0 : 100.0 * duplicates / finder.size());
+		if (options.isStructuralDuplicates())
+			message += " in " + finder.getRounds() + " rounds";
+		if(logToFile) bw.write(message + "\r\n");
+		System.out.println(message);
+	}
+	
+	/*
+	 * The instance triples the merged duplicates leave out of the output: a duplicate would have written the triples of its
+	 * kept line about itself, with the value resources already written
+	 */
+	private void reportSavedTriples(long triples) throws IOException{
+		if (mergedCounts == null)
+			return;
+		long saved = savedTriples.get();
+		String message = String.format("the merged duplicates left out %d of %d instance triples (%.1f%%)", saved, saved + triples, saved + triples == 0 ? 0.0 : 100.0 * saved / (saved + triples));
+		if(logToFile) bw.write(message + "\r\n");
+		System.out.println(message);
+	}
+	
+	// a reference to a removed duplicate line points to the line that was kept instead
+	private IFCVO getReferencedEntry(long line_num) {
+		if (index != null) {
+			long kept = index.getCanonical(line_num);
+			if (kept == Long.MIN_VALUE)
+				return null;
+			// only the type and the line number of a referenced line are used
+			IFCVO or = new IFCVO();
+			or.setLine_num(kept);
+			or.setType(index.getType(kept));
+			or.setName(symbols.getName(or.getType()));
+			return or;
+		}
+		IFCVO or = listOfDuplicateLineEntries.get(line_num);
+		if (or == null)
+			or = linemap.get(line_num);
+		return or;
+	}
+	
+	// the value and list resources are numbered after the entities
+	private TripleEmitter newEmitter() {
+		TripleEmitter emitter = new TripleEmitter(sink, baseURI, IDcounter);
+		if (options.isContentIRIs())
+			emitter.setValueNamespace(options.getValueNamespace());
+		return emitter;
+	}
+	
+	private void createInstances() throws IOException{		
+		TripleEmitter emitter = newEmitter();
+		// the log file is written by one thread only
+		if (options.isParallelEmit() && !logToFile) {
+			ParallelEmission emission = new ParallelEmission(options.getThreads(), options.isDeterministic(), baseURI);
+			emission.emit(linemap, linemap.size(), new ParallelEmission.BlockWriter() {
+				@Override
+				public void write(List<IFCVO> block, TripleEmitter emitter) throws IOException {
+					InstanceWriter writer = new InstanceWriter(emitter);
+					for (IFCVO ifc_lineEntry : block)
+						writer.createInstance(ifc_lineEntry);
+				}
+			}, emitter, progressReporter);
+		} else {
+			InstanceWriter writer = new InstanceWriter(emitter);
+			int i = 0;
+			for (IFCVO ifc_lineEntry : linemap) {			
+				writer.createInstance(ifc_lineEntry);
+				i++;
+				
+				updateProgress(i, linemap.size());
+			}
+		}
+		reportSavedTriples(emitter.getCount());
+	}
+	
+	/*
+	 * Writes the triples of entities through one TripleEmitter. A parallel conversion has one writer per block of entities.
+	 */
+	private class InstanceWriter {
+		private final TripleEmitter emitter;
+		// the type of a TYPE(value) attribute, remembered for the value that follows it
+		private TypeVO typeremembrance = null;
+		// the entity whose attributes are written, for the inverse references
+		private IFCVO source = null;
+		// the triples of the value resources written so far, a duplicate would not write them again
+		private long valueTriples = 0;
+		// the literals of the list attribute that is written, reused from one list to the next
+		private final List<String> literals = new ArrayList<String>();
+
+		InstanceWriter(TripleEmitter emitter) {
+			this.emitter = emitter;
+		}
+
+		private void createInstance(IFCVO ifc_lineEntry) throws IOException{
+			int duplicates = mergedCounts == null ? 0 : DuplicateFinder.duplicatesOf(mergedCounts, ifc_lineEntry.getLine_num());
+			if (duplicates == 0) {
+				writeInstance(ifc_lineEntry);
+				return;
+			}
+			long triples = emitter.getCount() - valueTriples;
+			writeInstance(ifc_lineEntry);
+			savedTriples.addAndGet(duplicates * (emitter.getCount() - valueTriples - triples));
+		}
+
+		private void writeInstance(IFCVO ifc_lineEntry) throws IOException{
+			EntityVO evo = symbols.getEntity(ifc_lineEntry.getType());
+			if (evo == null) {
+				// a keyword that is not an entity of the schema, the line is left out
+				System.err.println("Does not exist: " + ifc_lineEntry.getName());
+				if(logToFile) bw.write("Does not exist: " + ifc_lineEntry.getName() + "\r\n");
+				return;
+			}
+			EntityPlan entityPlan = plan.getEntity(evo);
+			
+			Node r = emitter.entity(evo.getName(), ifc_lineEntry.getLine_num());
+			emitter.type(r, entityPlan.type);
+			
+			if(logToFile) bw.write("-------------------------------" + "\r\n");
+			if(logToFile) bw.write(r.getLocalName() + "\r\n");
+			if(logToFile) bw.write("-------------------------------" + "\r\n");
+				
+			fillProperties(ifc_lineEntry, r, entityPlan);
+		}
+	
+		/*
+		 * Writes the attributes of an entity from its tokens. The references are resolved as they are met, the parsed model
+		 * keeps them as line numbers.
+		 */
+		private void fillProperties(IFCVO ifc_lineEntry, Node r, EntityPlan entityPlan) throws IOException {		
+	
+			// the lists of lists are written from their tokens, and the lists of numbers with compactLists
+			boolean[] streamed = options.isCompactLists() ? entityPlan.numericLists : entityPlan.nestedLists;
+			AttributeStore store = ifc_lineEntry.getAttributeStore();
+			typeremembrance = null;
+			source = ifc_lineEntry;
+			int attribute_pointer = 0;
+			int to = store == null ? 0 : ifc_lineEntry.getAttributesTo();
+			for (int i = ifc_lineEntry.getAttributesFrom(); i < to; i = store.next(i)) {
+				switch (store.kind(i)) {
+				case AttributeStore.STRING:
+					attribute_pointer = fillProperties_handleStringObject(r, entityPlan,
+							attribute_pointer, store.string(i));
+					break;
+				case AttributeStore.REF:
+					// a pruned attribute is left as unset, as is a reference to a line that does not exist
+					long line_num = store.reference(i);
+					IFCVO or = isPruned(line_num) ? null : getReferencedEntry(line_num);
+					if (or != null)
+						attribute_pointer = fillProperties_handleIFC_Object(r,
+								entityPlan, attribute_pointer, or);
+					else
+						attribute_pointer++;
+					break;
+				case AttributeStore.TYPED:
+					TypeVO type = symbols.getType(store.symbol(i));
+					if (type != null) {
+						// the list that follows is the value, the attribute is counted with it
+						typeremembrance = type;
+						break;
+					}
+					if(logToFile) bw.write("WARNING: skipped the value of the unknown type " + symbols.getName(store.symbol(i)) + " of " + subject() + "\r\n");
+					if (store.next(i) < to)
+						i = store.next(i);
+					attribute_pointer++;
+					break;
+				case AttributeStore.LIST:
+					if (attribute_pointer < streamed.length && streamed[attribute_pointer])
+						attribute_pointer = fillProperties_handleStreamedList(r, entityPlan,
+								attribute_pointer, store, i + 1, store.next(i));
+					else
+						attribute_pointer = fillProperties_handleListObject(r, entityPlan,
+								attribute_pointer, store, i + 1, store.next(i));
+					break;
+				default:
+					// '$' and '*'
+					attribute_pointer++;
+				}
+				if(logToFile) bw.flush();
+			}
+			if(logToFile) bw.flush();
+		}
+
+		// the entity whose attributes are written as IfcWall_12, it is only built for the log
+		private String subject() {
+			return symbols.getEntity(source.getType()).getName() + "_" + source.getLine_num();
+		}
+
+		private int fillProperties_handleStringObject(Node r, EntityPlan entityPlan,
+				int attribute_pointer, String o) throws IOException {
+			AttributePlan attribute = entityPlan.getAttribute(attribute_pointer);
+			if (attribute != null) {
+				final String literalString = filter_extras(o);					
+	
+				Node p = attribute.property;
+				RangePlan range = attribute.range;
+				if(range != null && range.isClass){
+					if(range.isEnumeration){
+						addEnumProperty(r,p,range,literalString);
+					}				
+					//Check for SELECT
+					else if(range.isSelect){
+						if(logToFile) bw.write("1 - WARNING TODO: found SELECT property: " + p + " - " + range.localName + " - " + literalString + "\r\n");
+					}									
+					else if(range.isList){
+						if(logToFile) bw.write("1a - WARNING TODO: found LIST property: " + subject() + " -- " + p + " - " + range.localName + " - " + literalString + "\r\n");
+					}
+					else {	
+						if(range.xsdType!=null){
+							Node r1 = getValueOrLiteral(range, range.localName, literalString);
+							if (r1 != null) {
+								emitter.triple(r, p, r1);
+								if(logToFile) bw.write("added property: " + r.getLocalName() + " - " + p.getLocalName() + " - " + label(r1) + "\r\n");
+							}
+						}
+						else{
+							if(logToFile) bw.write("1b - WARNING TODO: this should not happen for: " + p + " - " + range.node.getURI() + " - " + literalString + "\r\n");
+						}
+					}									
+				}
+				else {
+					if(logToFile) bw.write("5 - WARNING: found other kind of property: " + p + " - " + (range == null ? null : range.localName) + "\r\n");										
+				}
+			}
+			attribute_pointer++;
+			return attribute_pointer;
+		}
+
+		private int fillProperties_handleIFC_Object(Node r, EntityPlan entityPlan,
+				int attribute_pointer, IFCVO o) throws IOException {
+			AttributePlan attribute = entityPlan.getAttribute(attribute_pointer);
+			if (attribute != null) {
+				EntityVO evorange = symbols.getEntity(o.getType());
+
+				Node p = attribute.property;
+
+				Node r1 = emitter.entity(evorange.getName(), o.getLine_num());
+				emitter.triple(r, p, r1);		
+				if(logToFile) bw.write("added property: " + r.getLocalName() + " - " + p.getLocalName() + " - " + r1.getLocalName() + "\r\n");
+				if (inverses != null)
+					addInverse(attribute, o, evorange);
+			} 
+			attribute_pointer++;
+			return attribute_pointer;
+		}
+
+		/*
+		 * A list attribute from its tokens [from, to). The references to pruned lines are left out of the list.
+		 */
+		private int fillProperties_handleListObject(Node r, EntityPlan entityPlan,
+				int attribute_pointer, AttributeStore store, int from, int to) throws IOException {	
+		
+			literals.clear();
+			AttributePlan attribute = entityPlan.getAttribute(attribute_pointer);
+		
+			//process list
+			int position = 0;
+			elements: for (int j = from; j < to; j = store.next(j)) {
+				switch (store.kind(j)) {
+				case AttributeStore.STRING:
+					literals.add(filter_extras(store.string(j)));
+					break;
+				case AttributeStore.NULL:
+					literals.add("$");
+					break;
+				case AttributeStore.DERIVED:
+					literals.add("*");
+					break;
+				case AttributeStore.TYPED:
+					TypeVO type = symbols.getType(store.symbol(j));
+					if (type == null) {
+						if(logToFile) bw.write("WARNING: skipped the unknown type " + symbols.getName(store.symbol(j)) + " in a list" + "\r\n");
+					} else if (typeremembrance==null)
+						typeremembrance = type;	
+					else
+						literals.add(filter_extras(type.getName().toUpperCase()));
+					break;
+				case AttributeStore.LIST:
+					if (typeremembrance != null) {
+						for (int jj = j + 1; jj < store.next(j); jj = store.next(jj)) {
+							int kind = store.kind(jj);
+							if (kind == AttributeStore.STRING)
+								literals.add(filter_extras(store.string(jj)));
+							else if (kind == AttributeStore.NULL)
+								literals.add("$");
+							else if (kind == AttributeStore.DERIVED)
+								literals.add("*");
+						}
+					}
+					break;
+				case AttributeStore.REF:
+					long line_num = store.reference(j);
+					if (isPruned(line_num))
+						continue;
+					IFCVO or = getReferencedEntry(line_num);
+					if (or == null) {
+						System.err.println("Reference to non-existing line in the IFC file.");
+						literals.add("-");
+					} else if (attribute != null) {
+						Node p = attribute.property;
+						RangePlan typerange = attribute.range;
+
+						if(typerange != null && typerange.isList){
+							//EXPRESS LISTs
+							if(typerange.isListOfList){
+								if(logToFile) bw.write("6 - WARNING: Found unhandled ListOfList" + "\r\n");
+							}
+							else{
+								fillClassInstanceList(store, j, to, position, typerange, p, r);
+								break elements;
+							}
+						}			
+						else{
+							//EXPRESS SETs
+							EntityVO evorange = symbols.getEntity(or.getType());								
+
+							Node r1 = emitter.entity(evorange.getName(), or.getLine_num());
+							emitter.triple(r, p, r1);	
+							if(logToFile) bw.write("added property: " + r.getLocalName() + " - " + p.getLocalName() + " - " + r1.getLocalName() + "\r\n");		
+							if (inverses != null)
+								addInverse(attribute, or, evorange);
+						}
+					}
+					break;
+				}
+				position++;
+			}
+
+			//interpret parse
+			if (literals.size() > 0) {
+				if(typeremembrance != null){
+					if (attribute != null) {				
+						addSinglePropertyFromTypeRemembrance(r, attribute.property, literals.get(0), typeremembrance);
+					}
+					typeremembrance = null;
+				}
+				else if (attribute != null) {						
+					addRegularListProperty(r, attribute, literals);
+				}
+			}
+			attribute_pointer++;
+			return attribute_pointer;
+		}
+
+		/*
+		 * Remembers the reference to target when its entity has a selected inverse attribute for it
+		 */
+		private void addInverse(AttributePlan attribute, IFCVO target, EntityVO evorange) {
+			if (!inverses.selects(attribute.inverseName))
+				return;
+			Node inverse = plan.getInverse(evorange, attribute, ent);
+			if (inverse != null)
+				inverses.add(target.getLine_num(), target.getType(), inverse, source.getLine_num(), source.getType());
+		}
+
+		/*
+		 * Writes the inverse triples collected while the instances were written, those of an entity together:
+		 * inst:IfcWall_12 ifcowl:isDefinedBy_IfcObject inst:IfcRelDefinesByProperties_40.
+		 */
+		private void createInverseTriples() throws IOException {
+			inverses.visit(new InverseIndex.Visitor() {
+				@Override
+				public void inverse(long target, int targetType, Node property, long source, int sourceType) throws IOException {
+					Node r = emitter.entity(symbols.getEntity(targetType).getName(), target);
+					Node r1 = emitter.entity(symbols.getEntity(sourceType).getName(), source);
+					emitter.triple(r, property, r1);
+					if(logToFile) bw.write("added inverse property: " + r.getLocalName() + " - " + property.getLocalName() + " - " + r1.getLocalName() + "\r\n");
+				}
+			});
+			System.out.println("added " + inverses.size() + " inverse relationships");
+		}
+
+		/*
+		 * Writes a shortcut from every object to every spatial structure element above it, through any number of
+		 * IfcRelAggregates and IfcRelContainedInSpatialStructure: inst:IfcWall_12 spatial:containedIn inst:IfcBuildingStorey_30.
+		 */
+		private void createSpatialTriples() throws IOException {
+			final Node containedIn = NodeFactory.createURI(SpatialIndex.CONTAINED_IN);
+			// IFC2X3 has no IfcSpatialElement, in IFC4 it is the supertype of the IfcSpatialStructureElements
+			final EntityTypeFilter structures = new EntityTypeFilter(ent, ent.containsKey("IFCSPATIALELEMENT") ? "IfcSpatialElement" : "IfcSpatialStructureElement", null);
+			final int[] count = new int[1];
+			spatial.visit(new SpatialIndex.Visitor() {
+				@Override
+				public void ancestor(long object, long ancestor) throws IOException {
+					IFCVO a = isPruned(ancestor) ? null : getReferencedEntry(ancestor);
+					if (a == null || !structures.accepts(a.getType(), symbols))
+						return;
+					IFCVO o = isPruned(object) ? null : getReferencedEntry(object);
+					EntityVO evo = o == null ? null : symbols.getEntity(o.getType());
+					EntityVO evoancestor = symbols.getEntity(a.getType());
+					if (evo == null || evoancestor == null)
+						return;
+					Node r = emitter.entity(evo.getName(), o.getLine_num());
+					Node r1 = emitter.entity(evoancestor.getName(), a.getLine_num());
+					emitter.triple(r, containedIn, r1);
+					count[0]++;
+					if(logToFile) bw.write("added containment: " + r.getLocalName() + " - " + r1.getLocalName() + "\r\n");
+				}
+			});
+			System.out.println("added " + count[0] + " spatial containment shortcuts");
+		}
+
+		/*
+		 * Writes the bounding box of every product with a geometry that BoundingBoxes can bound, as one literal:
+		 * inst:IfcWall_12 geom:boundingBox "0.0 -100.0 0.0, 5000.0 100.0 2800.0"^^dt:BoundingBox, the minimum and the
+		 * maximum corner in world coordinates. The geometry is read from the parsed model.
+		 */
+		private void createBoundingBoxTriples() throws IOException {
+			Node boundingBox = NodeFactory.createURI(BoundingBoxes.BOUNDING_BOX);
+			RDFDatatype datatype = TypeMapper.getInstance().getSafeTypeByName(ConversionPlan.DATATYPE_NS + "BoundingBox");
+			EntityTypeFilter products = new EntityTypeFilter(ent, "IfcProduct", null);
+			BoundingBoxes boxes = new BoundingBoxes(new BoundingBoxes.Lines() {
+				@Override
+				public IFCVO get(long line_num) {
+					return isPruned(line_num) ? null : getReferencedEntry(line_num);
+				}
+			}, symbols);
+			double[] box = new double[6];
+			StringBuilder lexical = new StringBuilder();
+			int count = 0;
+			for (IFCVO vo : linemap) {
+				if (!products.accepts(vo.getType(), symbols) || !boxes.compute(vo, box))
+					continue;
+				lexical.setLength(0);
+				for (int i = 0; i < 6; i++)
+					lexical.append(i == 0 ? "" : i == 3 ? ", " : " ").append(box[i]);
+				Node r = emitter.entity(symbols.getEntity(vo.getType()).getName(), vo.getLine_num());
+				emitter.triple(r, boundingBox, emitter.literal(lexical.toString(), datatype));
+				count++;
+				if(logToFile) bw.write("added bounding box: " + r.getLocalName() + " - " + lexical + "\r\n");
+			}
+			System.out.println("added " + count + " bounding boxes");
+		}
+
+		/*
+		 * Writes a triple from every object to every single value of the property sets it is defined by:
+		 * inst:IfcWall_12 pset:Pset_WallCommon/FireRating "2HR". The predicate is the property set namespace, the name of
+		 * the property set and the name of the property.
+		 */
+		private void createPropertySetTriples() throws IOException {
+			final Map<String, Node> predicates = new HashMap<String, Node>();
+			propertySets.visit(new PropertySetIndex.Visitor() {
+				@Override
+				public void property(long object, String propertySet, String property, int valueType, String value) throws IOException {
+					IFCVO or = isPruned(object) ? null : getReferencedEntry(object);
+					EntityVO evo = or == null ? null : symbols.getEntity(or.getType());
+					if (evo == null)
+						return;
+					String key = propertySet + "/" + property;
+					Node predicate = predicates.get(key);
+					if (predicate == null) {
+						predicate = NodeFactory.createURI(options.getPsetNamespace() + encodeName(propertySet) + "/" + encodeName(property));
+						predicates.put(key, predicate);
+					}
+					TypeVO type = symbols.getType(valueType);
+					RangePlan range = type == null ? null : plan.getType(type);
+					String literalString = filter_extras(value);
+					Node literal = range == null || range.xsdType == null ? emitter.literal(literalString, XSDDatatype.XSDstring) : literalNode(range, literalString);
+					if (literal == null)
+						return;
+					Node r = emitter.entity(evo.getName(), or.getLine_num());
+					emitter.triple(r, predicate, literal);
+					if(logToFile) bw.write("added property set value: " + r.getLocalName() + " - " + predicate.getURI() + " - " + literalString + "\r\n");
+				}
+			});
+		}
+
+		/*
+		 * A list attribute that is written from its tokens: a list of lists, or a list of numbers as a compact literal
+		 */
+		private int fillProperties_handleStreamedList(Node r, EntityPlan entityPlan,
+				int attribute_pointer, AttributeStore store, int from, int to) throws IOException {
+			AttributePlan attribute = entityPlan.getAttribute(attribute_pointer);
+			if (attribute == null)
+				return attribute_pointer + 1;
+			RangePlan range = attribute.range;
+			if (range == null) {
+				if(logToFile) bw.write("WARNING: skipped the list property without a range: " + r.getLocalName() + " - " + attribute.property + "\r\n");
+				return attribute_pointer + 1;
+			}
+			if (options.isCompactLists() && range.compactDatatype != null) {
+				String lexical = compactLexical(store, from, to, range.compactIntegers, range.compactDepth);
+				if (lexical != null) {
+					Node r1 = emitter.literal(lexical, range.compactDatatype);
+					emitter.triple(r, attribute.property, r1);
+					if(logToFile) bw.write("added compact list: " + r.getLocalName() + " - " + attribute.property.getLocalName() + " - " + lexical + "\r\n");
+					return attribute_pointer + 1;
+				}
+			}
+			if (range.isListOfList) {
+				addNestedList(r, attribute, store, from, to);
+				return attribute_pointer + 1;
+			}
+			// a list of numbers with an element that is not a number, it is written as any other list
+			return fillProperties_handleListObject(r, entityPlan, attribute_pointer, store, from, to);
+		}
+
+		/*
+		 * Writes a list of lists as a chain of list resources whose contents are the chains of the inner lists. The triples
+		 * of every list resource are written as soon as the next one is known, so nothing is collected on the way.
+		 */
+		private void addNestedList(Node r, AttributePlan attribute, AttributeStore store, int from, int to) throws IOException {
+			RangePlan range = attribute.range;
+			if (range == null) {
+				if(logToFile) bw.write("WARNING: skipped the list of lists without a range: " + r.getLocalName() + " - " + attribute.property + "\r\n");
+				return;
+			}
+			Node previous = null;
+			for (int i = from; i < to; i = store.next(i)) {
+				if (store.kind(i) != AttributeStore.LIST) {
+					if(logToFile) bw.write("WARNING: found an element that is not a list in the list of lists " + attribute.property.getLocalName() + "\r\n");
+					continue;
+				}
+				Node node = emitter.newResource(range.localName);
+				emitter.type(node, range.node);
+				if (previous == null) {
+					emitter.triple(r, attribute.property, node);
+					if(logToFile) bw.write("added property: " + r.getLocalName() + " - " + attribute.property.getLocalName() + " - " + node.getLocalName() + "\r\n");
+				} else
+					emitter.triple(previous, plan.hasNext, node);
+				Node contents = addInnerList(range.elementType, store, i + 1, store.next(i));
+				if (contents != null)
+					emitter.triple(node, plan.hasContents, contents);
+				previous = node;
+			}
+		}
+
+		/*
+		 * Writes the chain of an inner list of a list of lists from the tokens [from, to) and returns its first list resource,
+		 * or null when the list is empty
+		 */
+		private Node addInnerList(RangePlan range, AttributeStore store, int from, int to) throws IOException {
+			if (range == null) {
+				if(logToFile) bw.write("WARNING: did not find the inner list type of a list of lists" + "\r\n");
+				return null;
+			}
+			RangePlan content = range.contentType;
+			Node first = null;
+			Node previous = null;
+			for (int i = from; i < to; i = store.next(i)) {
+				Node value;
+				int kind = store.kind(i);
+				if (kind == AttributeStore.REF) {
+					long line_num = store.reference(i);
+					IFCVO or = isPruned(line_num) ? null : getReferencedEntry(line_num);
+					if (or == null)
+						continue;
+					value = emitter.entity(symbols.getEntity(or.getType()).getName(), or.getLine_num());
+				} else if (kind == AttributeStore.STRING && content != null && content.xsdType != null)
+					value = getValueOrLiteral(content, content.localName, filter_extras(store.string(i)));
+				else
+					value = null;
+				if (value == null) {
+					if(logToFile) bw.write("WARNING: skipped an element of the inner list " + range.localName + "\r\n");
+					continue;
+				}
+				Node node = emitter.newResource(range.localName);
+				emitter.type(node, range.node);
+				if (previous == null)
+					first = node;
+				else
+					emitter.triple(previous, plan.hasNext, node);
+				emitter.triple(node, plan.hasContents, value);
+				previous = node;
+			}
+			return first;
+		}
+
+		private void addSinglePropertyFromTypeRemembrance(Node r, Node p, String literalString, TypeVO typeremembrance) throws IOException{				
+			RangePlan range = plan.getType(typeremembrance);
+		
+			if(range != null && range.isClass){
+				//Check for ENUM
+				if(range.isEnumeration){
+					addEnumProperty(r,p,range,literalString);									
+				}								
+				//Check for SELECT
+				else if(range.isSelect){
+					if(logToFile) bw.write("9 - WARNING TODO: found SELECT property: " + p + " - " + range.localName + " - " + literalString + "\r\n");
+				}								
+				else {
+					if(range.xsdType!=null){
+						Node r1 = getValueNode(range, typeremembrance.getName(), literalString);
+						emitter.triple(r, p, r1);
+						if(logToFile) bw.write("added property: " + r.getLocalName() + " - " + p.getLocalName() + " - " + r1.getLocalName() + "\r\n");		
+					}
+				}									
+			}
+			else {
+				if(logToFile) bw.write("12 - WARNING: found other kind of property: " + p + " - " + (range == null ? typeremembrance.getName() : range.localName) + "\r\n");										
+			}
+		}
+	
+		/*
+		 * The object of an attribute or list element of a defined type: its value resource, or with directLiterals the
+		 * literal itself. Null when there is no value, see literalNode().
+		 */
+		private Node getValueOrLiteral(RangePlan range, String typeName, String literalString) throws IOException{
+			if (options.isDirectLiterals())
+				return literalNode(range, literalString);
+			return getValueNode(range, typeName, literalString);
+		}
+	
+		/*
+		 * The value resource of a literal, created with its literal on first use. Equal values share one resource.
+		 */
+		private Node getValueNode(RangePlan range, String typeName, String literalString) throws IOException{
+			String key;
+			if (options.isContentIRIs()) {
+				// the key is hashed into the IRI, so it has the type and the same lexical form for an equal value
+				literalString = normalizeLexical(range, literalString);
+				key=typeName+":"+range.xsdType+":"+literalString;
+			} else
+				key=range.valueProperty.getURI()+":"+range.xsdType+":"+literalString;
+			// Create only when needed...
+			Node r1 = emitter.getValue(key);
+			if(r1==null)
+			{
+				long triples = emitter.getCount();
+				r1 = emitter.newValue(typeName, key);
+				emitter.type(r1, range.node);
+				if(logToFile) bw.write("created resource: " + r1.getLocalName() + "\r\n");
+				addLiteralToResource(r1,range,literalString);
+				valueTriples += emitter.getCount() - triples;
+			}
+			return r1;
+		}
+		
+		private void addEnumProperty(Node r, Node p, RangePlan range, String literalString) throws IOException{
+			Node rangeInstance = range.getIndividual(filter_points(literalString));
+			if (rangeInstance != null) {
+				emitter.triple(r, p, rangeInstance);
+				if(logToFile) bw.write("added ENUM statement " + r.getLocalName() + " - " + p.getLocalName() + " - " + rangeInstance.getLocalName() + "\r\n");
+			}
+		}
+	
+		private void addLiteralToResource(Node r1, RangePlan range, String literalString) throws IOException{
+			Node valueProp = range.valueProperty;
+			Node literal = literalNode(range, literalString);
+			if (literal == null)
+				return;
+			emitter.triple(r1, valueProp, literal);
+		
+			if(logToFile) bw.write("added literal: " + r1.getLocalName() + " - " + valueProp + " - " + literalString + "\r\n");
+		}
+
+		/*
+		 * The object of the express:hasXXX triple of a value: a typed literal, or the express:TRUE/FALSE/UNKNOWN individual
+		 * of a logical. Null for a boolean or logical that is not .T., .F. or .U.
+		 */
+		private Node literalNode(RangePlan range, String literalString) throws IOException{
+			if(range.datatype != null)
+				return emitter.literal(literalString, range.datatype);
+			else if("boolean".equals(range.xsdType)){
+				if(literalString.equalsIgnoreCase(".F."))
+					return BOOLEAN_FALSE;
+				else if(literalString.equalsIgnoreCase(".T."))
+					return BOOLEAN_TRUE;
+				if(logToFile) bw.write("WARNING: found odd boolean value: " + literalString + "\r\n");
+				return null;
+			}
+			else if("logical".equals(range.xsdType)){
+				if(literalString.equalsIgnoreCase(".F."))
+					return plan.logicalFalse;
+				else if(literalString.equalsIgnoreCase(".T."))
+					return plan.logicalTrue;
+				else if(literalString.equalsIgnoreCase(".U."))
+					return plan.logicalUnknown;
+				if(logToFile) bw.write("WARNING: found odd logical value: " + literalString + "\r\n");
+				return null;
+			}
+			else
+				return emitter.literal(literalString, XSDDatatype.XSDstring);
+		}
+	
+		//LIST HANDLING
+		private void addRegularListProperty(Node r, AttributePlan attribute, List<String> el) throws IOException{		
+			Node p = attribute.property;
+			RangePlan range = attribute.range;
+			if(range != null && range.isClass){
+				RangePlan listrange = range.contentType;
+			
+				if(listrange == null){
+					if(logToFile) bw.write("WARNING: did not find listcontenttype for : "+range.localName + "\r\n");
+				}
+				else if(listrange.isList){
+					if(logToFile) bw.write("14 - WARNING: Found unhandled ListOfList" + "\r\n");
+				}	
+				else{
+					List<Node> reslist = new ArrayList<Node>();
+					//createrequirednumberofresources
+					for(int ii = 0; ii<el.size();ii++){	
+						Node r1 = emitter.newResource(range.localName);
+						emitter.type(r1, range.node);
+						reslist.add(r1);
+						if(ii==0){
+							emitter.triple(r, p, r1);
+							if(logToFile) bw.write("added property: " + r.getLocalName() + " - " + p.getLocalName() + " - " + r1.getLocalName() + "\r\n");
+						}
+					}	
+					//bindtheproperties
+					addListInstanceProperties(reslist,el,listrange);	
+				}
+			}
+			else {
+				if(logToFile) bw.write("WARNING: skipped the list property without a class range: " + r.getLocalName() + " - " + p + " - " + (range == null ? null : range.localName) + "\r\n");
+			}
+		}
+	
+		private List<String> getListElements(String literalString) throws IOException{
+			String[] elements = literalString.split("_, ");
+			List<String> el = new ArrayList<String>();
+			for(String element : elements){
+				if(element.startsWith("_") && element.endsWith("_"))
+					if(logToFile) bw.write("WARNING getListElements(): Found list of enumerations" + "\r\n");
+				if(element.contains("_")){
+					if(logToFile) bw.write("WARNING getListElements(): Found '_' in list elements" + "\r\n");
+					element = element.replaceAll("_", "");
+				}
+				el.add(element);
+			}
+			return el;
+		}
+	
+		/*
+		 * The list of entities from the reference at index from on, that is the position-th element of the list
+		 */
+		private void fillClassInstanceList(AttributeStore store, int from, int to, int position, RangePlan typerange, Node p, Node r) throws IOException{
+			List<Node> reslist = new ArrayList<Node>();
+			List<IFCVO> entlist = new ArrayList<IFCVO>();
+		
+			//createrequirednumberofresources
+			for (int i = from; i < to; i = store.next(i)) {
+				if (store.kind(i) == AttributeStore.REF) {
+					long line_num = store.reference(i);
+					if (isPruned(line_num))
+						continue;
+					IFCVO or = getReferencedEntry(line_num);
+					if (or == null)
+						System.err.println("Reference to non-existing line in the IFC file.");
+					else {
+						Node r1 = emitter.newResource(typerange.localName);
+						emitter.type(r1, typerange.node);
+						reslist.add(r1);
+						entlist.add(or);
+						if (position == 0) {
+							emitter.triple(r, p, r1);
+						}
+					}
+				}
+				position++;
+			}	
+		
+			//bindtheproperties
+			addClassInstanceListProperties(reslist,entlist);
+		}
+	
+		private void addClassInstanceListProperties(List<Node> reslist, List<IFCVO> entlist) throws IOException{
+			Node listp = plan.hasContents;
+			Node isfollowed = plan.hasNext;
+		
+			for(int i = 0; i<reslist.size();i++){	
+				Node r = reslist.get(i);					
+			
+				EntityVO evorange = symbols.getEntity(entlist.get(i).getType());									
+			
+				Node r1 = emitter.entity(evorange.getName(), entlist.get(i).getLine_num());
+				emitter.triple(r, listp, r1);
+				if(logToFile) bw.write("created property: " + r.getLocalName() + " - " + listp.getLocalName() + " - " + r1.getLocalName() + "\r\n");	
+															
+				if(i<reslist.size()-1){								
+					emitter.triple(r, isfollowed, reslist.get(i+1));
+					if(logToFile) bw.write("created property: " + r.getLocalName() + " - " + isfollowed.getLocalName() + " - " + reslist.get(i+1).getLocalName() + "\r\n");
+				}	
+			}
+		}
+	
+		private void addListInstanceProperties(List<Node> reslist, List<String> listelements, RangePlan listrange) throws IOException{		
+			//GetListType
+			if(listrange.xsdType!=null){
+				//Adding Content only if found
+				for(int i = 0; i<reslist.size();i++){	
+					Node r = reslist.get(i);
+					Node r2 = getValueOrLiteral(listrange, listrange.localName, listelements.get(i));
+					if (r2 != null) {
+						emitter.triple(r, plan.hasContents, r2);
+						if(logToFile) bw.write("added property: " + r.getLocalName() + " - " + "-hasContents-" + " - " + label(r2) + "\r\n");
+					}
+
+					if(i<listelements.size()-1){								
+						emitter.triple(r, plan.hasNext, reslist.get(i+1));
+						if(logToFile) bw.write("added property: " + r.getLocalName() + " - " + "-hasNext-" + " - " + reslist.get(i+1).getLocalName() + "\r\n");
+					}	
+				}
+			}	
+			else
+				return;
+		}
+	}
+	
+	// HELPER METHODS
+	private String filter_extras(String txt) {
+		StringBuilder sb = new StringBuilder();
+		int length = txt.length();
+		for (int n = 0; n < length; n++) {
+			char ch = txt.charAt(n);
+			switch (ch) {
+			case '\'':
+				break;
+			case '=':
+				break;
+			default:
+				sb.append(ch);
+			}
+		}
+		return sb.toString();
+	}
+
+	private String filter_points(String txt) {
+		StringBuilder sb = new StringBuilder();
+		int length = txt.length();
+		for (int n = 0; n < length; n++) {
+			char ch = txt.charAt(n);
+			switch (ch) {
+			case '.':
+				break;
+			default:
+				sb.append(ch);
+			}
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * One lexical form for the numbers, booleans and logicals that can be written in several ways, as 1. and 1.0
+	 */
+	private String normalizeLexical(RangePlan range, String literalString) {
+		try {
+			if ("double".equals(range.xsdType))
+				return Double.toString(Double.parseDouble(literalString));
+			if ("integer".equals(range.xsdType))
+				return Long.toString(Long.parseLong(literalString.startsWith("+") ? literalString.substring(1) : literalString));
+		} catch (NumberFormatException e) {
+			return literalString;
+		}
+		if ("boolean".equals(range.xsdType) || "logical".equals(range.xsdType))
+			return literalString.toUpperCase();
+		return literalString;
+	}
+
+	/*
+	 * The numbers of the list tokens [from, to), or of a list of lists, as the lexical form of one literal: "0.0 1.5 3.0",
+	 * the inner lists separated by ", ". Null when an element is not a number, the list is converted as a chain of list
+	 * resources then.
+	 */
+	private String compactLexical(AttributeStore store, int from, int to, boolean integers, int depth) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = from; i < to; i = store.next(i)) {
+			if (i > from)
+				sb.append(depth > 1 ? ", " : " ");
+			if (depth > 1) {
+				if (store.kind(i) != AttributeStore.LIST)
+					return null;
+				String inner = compactLexical(store, i + 1, store.next(i), integers, depth - 1);
+				if (inner == null)
+					return null;
+				sb.append(inner);
+				continue;
+			}
+			if (store.kind(i) != AttributeStore.STRING)
+				return null;
+			String s = store.string(i);
+			try {
+				if (integers)
+					sb.append(Long.parseLong(s.startsWith("+") ? s.substring(1) : s));
+				else
+					sb.append(Double.parseDouble(s));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return sb.toString();
+	}
+
+	// a property set or property name as a part of an IRI
+	private String encodeName(String name) {
+		try {
+			return URLEncoder.encode(filter_extras(name), "UTF-8").replace("+", "%20");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// the local name of a resource or the lexical form of a literal, for the log
+	private static String label(Node node) {
+		return node.isLiteral() ? node.getLiteralLexicalForm() : node.getLocalName();
+	}
+
+	public void setProgressReporter(ProgressReporter progressReporter) {
+		this.progressReporter = progressReporter;
+	}
+
+	public void setOptions(ConversionOptions options) {
+		this.options = options;
+	}
+}
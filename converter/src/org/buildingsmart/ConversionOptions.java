@@ -0,0 +1,491 @@
+package org.buildingsmart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.json.JSONObject;
+
+/*
+ * ConversionOptions collects the optional settings of an IFC-to-RDF conversion. They can be given as leading command line
+ * flags of IfcReader/IfcReaderStream or as keys of the JSON configuration.
+ *
+ * The usage:
+ * ConversionOptions options = new ConversionOptions();
+ * args = options.parseArguments(args);
+ * converter.setOptions(options);
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class ConversionOptions {
+	public static final String DEFAULT_VALUE_NAMESPACE = "http://linkedbuildingdata.net/ifc/values/";
+	public static final String DEFAULT_PSET_NAMESPACE = "http://linkedbuildingdata.net/ifc/pset/";
+	public static final String USAGE = "Options:\n"
+			+ "  -parallelParse     parse the DATA section of the IFC file on several threads\n"
+			+ "  -threads <n>       number of threads used by the parallel modes (default: number of processors)\n"
+			+ "  -inMemory          read the whole file into memory instead of converting it in two passes\n"
+			+ "  -parallelEmit      create the triples of the entities on several threads\n"
+			+ "  -deterministic     with -parallelEmit: write the same output as a serial run, whatever the number of threads\n"
+			+ "  -countOnly         convert without keeping or writing the triples, only print their number\n"
+			+ "  -contentIRIs       name the value resources by a hash of their type and value instead of a number\n"
+			+ "  -valueNamespace <ns> namespace of the value resources with -contentIRIs (default: " + DEFAULT_VALUE_NAMESPACE + ")\n"
+			+ "  -structuralDuplicates also merge the lines that are equal once their references are merged\n"
+			+ "  -includeTypes <t,..> convert only the entities of these types and their subtypes\n"
+			+ "  -excludeTypes <t,..> leave out the entities of these types and their subtypes, e.g. IfcRepresentationItem\n"
+			+ "  -compactLists      write a list of numbers, or of lists of numbers, as one literal instead of a chain of list resources\n"
+			+ "  -directLiterals    attach the values of defined types as literals, without an IfcLabel_... resource in between\n"
+			+ "  -flattenPsets      also write the single property values as object - <pset ns><set>/<property> - literal triples\n"
+			+ "  -psetsOnly         write only the flattened property values\n"
+			+ "  -psetNamespace <ns> namespace of the flattened property predicates (default: " + DEFAULT_PSET_NAMESPACE + ")\n"
+			+ "  -inverses <n,..>   also write the inverse attributes with these names (IsDefinedBy,..), or all of them with 'all'\n"
+			+ "  -spatialClosure    also write a spatial:containedIn triple from every object to every spatial structure above it\n"
+			+ "  -boundingBoxes     also write the bounding box of every product in world coordinates (reads the model into memory)\n"
+			+ "  -tdb <dir>         load the triples into a named graph of the TDB dataset in dir instead of writing a file; then\n"
+			+ "                     every argument is an IFC file, the graph is named by its file URI\n"
+			+ "  -thrift            write RDF Thrift, a binary format that is much faster to write and to read back, instead of TTL\n"
+			+ "  -hdt               write a compressed HDT style file instead of TTL, HdtFile finds the triples of a pattern in it\n"
+			+ "  -formats <f,..>    write the output in each of these formats at the same time, each on a thread of its own,\n"
+			+ "                     into the output file with the extension of the format: " + MultiFormatWriter.FORMATS + "\n"
+			+ "  -gzip              compress the output files with gzip on -threads threads, .gz is added to their names\n";
+
+	private boolean parallelParse = false;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private boolean inMemory = false;
+	private boolean parallelEmit = false;
+	private boolean deterministic = false;
+	private boolean countOnly = false;
+	private boolean contentIRIs = false;
+	private String valueNamespace = DEFAULT_VALUE_NAMESPACE;
+	private boolean structuralDuplicates = false;
+	private String includeTypes = null;
+	private String excludeTypes = null;
+	private boolean compactLists = false;
+	private boolean directLiterals = false;
+	private boolean flattenPsets = false;
+	private boolean psetsOnly = false;
+	private String psetNamespace = DEFAULT_PSET_NAMESPACE;
+	private String inverses = null;
+	private boolean spatialClosure = false;
+	private boolean boundingBoxes = false;
+	private String tdb = null;
+	private boolean thrift = false;
+	private boolean hdt = false;
+	private String formats = null;
+	private boolean gzip = false;
+
+	/*
+	 * Reads the leading option flags and returns the remaining arguments
+	 */
+	public String[] parseArguments(String[] args) {
+		List<String> rest = new ArrayList<String>();
+		int i = 0;
+		for (; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equalsIgnoreCase("-parallelParse"))
+				parallelParse = true;
+			else if (arg.equalsIgnoreCase("-threads") && i + 1 < args.length) {
+				// a value that is not a number ends the options, as a missing one does, so the usage is shown
+				try {
+					setThreads(Integer.parseInt(args[i + 1]));
+				} catch (NumberFormatException e) {
+					System.err.println("-threads needs a number of threads, not " + args[i + 1]);
+					break;
+				}
+				i++;
+			}
+			else if (arg.equalsIgnoreCase("-inMemory"))
+				inMemory = true;
+			else if (arg.equalsIgnoreCase("-parallelEmit"))
+				parallelEmit = true;
+			else if (arg.equalsIgnoreCase("-deterministic"))
+				deterministic = true;
+			else if (arg.equalsIgnoreCase("-countOnly"))
+				countOnly = true;
+			else if (arg.equalsIgnoreCase("-contentIRIs"))
+				contentIRIs = true;
+			else if (arg.equalsIgnoreCase("-valueNamespace") && i + 1 < args.length)
+				valueNamespace = args[++i];
+			else if (arg.equalsIgnoreCase("-structuralDuplicates"))
+				structuralDuplicates = true;
+			else if (arg.equalsIgnoreCase("-includeTypes") && i + 1 < args.length)
+				includeTypes = args[++i];
+			else if (arg.equalsIgnoreCase("-excludeTypes") && i + 1 < args.length)
+				excludeTypes = args[++i];
+			else if (arg.equalsIgnoreCase("-compactLists"))
+				compactLists = true;
+			else if (arg.equalsIgnoreCase("-directLiterals"))
+				directLiterals = true;
+			else if (arg.equalsIgnoreCase("-flattenPsets"))
+				flattenPsets = true;
+			else if (arg.equalsIgnoreCase("-psetsOnly"))
+				psetsOnly = true;
+			else if (arg.equalsIgnoreCase("-psetNamespace") && i + 1 < args.length)
+				psetNamespace = args[++i];
+			else if (arg.equalsIgnoreCase("-inverses") && i + 1 < args.length)
+				inverses = args[++i];
+			else if (arg.equalsIgnoreCase("-spatialClosure"))
+				spatialClosure = true;
+			else if (arg.equalsIgnoreCase("-boundingBoxes"))
+				boundingBoxes = true;
+			else if (arg.equalsIgnoreCase("-tdb") && i + 1 < args.length)
+				tdb = args[++i];
+			else if (arg.equalsIgnoreCase("-thrift"))
+				thrift = true;
+			else if (arg.equalsIgnoreCase("-hdt"))
+				hdt = true;
+			else if (arg.equalsIgnoreCase("-formats") && i + 1 < args.length)
+				formats = args[++i];
+			else if (arg.equalsIgnoreCase("-gzip"))
+				gzip = true;
+			else
+				break;
+		}
+		for (; i < args.length; i++)
+			rest.add(args[i]);
+		return rest.toArray(new String[rest.size()]);
+	}
+
+	public void readJSON(JSONObject obj) {
+		if (obj.has("parallel_parse"))
+			parallelParse = obj.getBoolean("parallel_parse");
+		if (obj.has("threads"))
+			setThreads(obj.getInt("threads"));
+		if (obj.has("in_memory"))
+			inMemory = obj.getBoolean("in_memory");
+		if (obj.has("parallel_emit"))
+			parallelEmit = obj.getBoolean("parallel_emit");
+		if (obj.has("deterministic"))
+			deterministic = obj.getBoolean("deterministic");
+		if (obj.has("count_only"))
+			countOnly = obj.getBoolean("count_only");
+		if (obj.has("content_iris"))
+			contentIRIs = obj.getBoolean("content_iris");
+		if (obj.has("value_namespace"))
+			valueNamespace = obj.getString("value_namespace");
+		if (obj.has("structural_duplicates"))
+			structuralDuplicates = obj.getBoolean("structural_duplicates");
+		if (obj.has("include_types"))
+			includeTypes = obj.getString("include_types");
+		if (obj.has("exclude_types"))
+			excludeTypes = obj.getString("exclude_types");
+		if (obj.has("compact_lists"))
+			compactLists = obj.getBoolean("compact_lists");
+		if (obj.has("direct_literals"))
+			directLiterals = obj.getBoolean("direct_literals");
+		if (obj.has("flatten_psets"))
+			flattenPsets = obj.getBoolean("flatten_psets");
+		if (obj.has("psets_only"))
+			psetsOnly = obj.getBoolean("psets_only");
+		if (obj.has("pset_namespace"))
+			psetNamespace = obj.getString("pset_namespace");
+		if (obj.has("inverses"))
+			inverses = obj.getString("inverses");
+		if (obj.has("spatial_closure"))
+			spatialClosure = obj.getBoolean("spatial_closure");
+		if (obj.has("bounding_boxes"))
+			boundingBoxes = obj.getBoolean("bounding_boxes");
+		if (obj.has("tdb"))
+			tdb = obj.getString("tdb");
+		if (obj.has("thrift"))
+			thrift = obj.getBoolean("thrift");
+		if (obj.has("hdt"))
+			hdt = obj.getBoolean("hdt");
+		if (obj.has("formats"))
+			formats = obj.getString("formats");
+		if (obj.has("gzip"))
+			gzip = obj.getBoolean("gzip");
+	}
+
+	public boolean isParallelParse() {
+		return parallelParse;
+	}
+
+	public void setParallelParse(boolean parallelParse) {
+		this.parallelParse = parallelParse;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	/*
+	 * A file is converted in two passes without keeping it in memory, unless this is set or the file is parsed or converted
+	 * in parallel. Other input streams are always read into memory.
+	 */
+	public boolean isInMemory() {
+		return inMemory;
+	}
+
+	public void setInMemory(boolean inMemory) {
+		this.inMemory = inMemory;
+	}
+
+	/*
+	 * Creates the triples of blocks of entities on several threads. The conversion is serial when it writes a log file.
+	 */
+	public boolean isParallelEmit() {
+		return parallelEmit;
+	}
+
+	public void setParallelEmit(boolean parallelEmit) {
+		this.parallelEmit = parallelEmit;
+	}
+
+	/*
+	 * With parallelEmit the blocks are merged in file order, so the value resources get the same numbers as in a serial run.
+	 * Without it a block is merged as soon as it is ready and the numbering depends on the timing of the threads.
+	 */
+	public boolean isDeterministic() {
+		return deterministic;
+	}
+
+	public void setDeterministic(boolean deterministic) {
+		this.deterministic = deterministic;
+	}
+
+	/*
+	 * The triples go into a CountingTripleSink only, for measuring the conversion without the Model or the writer
+	 */
+	public boolean isCountOnly() {
+		return countOnly;
+	}
+
+	public void setCountOnly(boolean countOnly) {
+		this.countOnly = countOnly;
+	}
+
+	/*
+	 * The value resources, as IfcLengthMeasure_..., are named by the hash of their type, datatype and lexical value under
+	 * the value namespace, so the same value has the same IRI in every file. The numbers and booleans are written in one
+	 * lexical form then. The list resources are still numbered.
+	 */
+	public boolean isContentIRIs() {
+		return contentIRIs;
+	}
+
+	public void setContentIRIs(boolean contentIRIs) {
+		this.contentIRIs = contentIRIs;
+	}
+
+	public String getValueNamespace() {
+		return valueNamespace;
+	}
+
+	public void setValueNamespace(String valueNamespace) {
+		this.valueNamespace = valueNamespace;
+	}
+
+	/*
+	 * Duplicate lines are searched to a fixed point: lines that differ only in references to lines that are duplicates of
+	 * each other are duplicates too. Without it only the lines that are equal after the '#id=' are merged. The Model output
+	 * of IfcConvertor merges duplicates only when this is set.
+	 */
+	public boolean isStructuralDuplicates() {
+		return structuralDuplicates;
+	}
+
+	public void setStructuralDuplicates(boolean structuralDuplicates) {
+		this.structuralDuplicates = structuralDuplicates;
+	}
+
+	/*
+	 * Comma separated entity types, each with its subtypes, see EntityTypeFilter. With include types only those are
+	 * converted, the exclude types are left out; the nearest named supertype decides. The references to a left out line
+	 * are dropped. Null for no filter.
+	 */
+	public String getIncludeTypes() {
+		return includeTypes;
+	}
+
+	public void setIncludeTypes(String includeTypes) {
+		this.includeTypes = includeTypes;
+	}
+
+	public String getExcludeTypes() {
+		return excludeTypes;
+	}
+
+	public void setExcludeTypes(String excludeTypes) {
+		this.excludeTypes = excludeTypes;
+	}
+
+	/*
+	 * An output profile outside ifcOWL: a list of numbers such as the coordinates of an IfcCartesianPoint, or a list of
+	 * lists of numbers such as the CoordIndex of an IfcTriangulatedFaceSet, is written as one literal "0.0 1.5 3.0" (inner
+	 * lists separated by ", ") with a datatype named after the list class in ConversionPlan.DATATYPE_NS.
+	 */
+	public boolean isCompactLists() {
+		return compactLists;
+	}
+
+	public void setCompactLists(boolean compactLists) {
+		this.compactLists = compactLists;
+	}
+
+	/*
+	 * An output profile outside ifcOWL: an attribute or list element of a defined type, as the IfcLabel of a name, gets its
+	 * literal as object instead of a value resource with an rdf:type and an express:hasXXX triple. The defined type follows
+	 * from the range of the property. The values of a SELECT attribute, as IFCLABEL('abc'), keep their resource, it is the
+	 * only place where their type is written.
+	 */
+	public boolean isDirectLiterals() {
+		return directLiterals;
+	}
+
+	public void setDirectLiterals(boolean directLiterals) {
+		this.directLiterals = directLiterals;
+	}
+
+	/*
+	 * Besides the ifcOWL triples, every object gets a triple per single value property of its property sets, from the
+	 * object straight to the value: inst:IfcWall_12 <pset namespace>Pset_WallCommon/FireRating "2HR". Only the
+	 * IfcPropertySingleValues with a typed nominal value are flattened.
+	 */
+	public boolean isFlattenPsets() {
+		return flattenPsets;
+	}
+
+	public void setFlattenPsets(boolean flattenPsets) {
+		this.flattenPsets = flattenPsets;
+	}
+
+	/*
+	 * Writes the flattened property values without the ifcOWL triples. A streaming conversion then skips its second pass.
+	 */
+	public boolean isPsetsOnly() {
+		return psetsOnly;
+	}
+
+	public void setPsetsOnly(boolean psetsOnly) {
+		this.psetsOnly = psetsOnly;
+	}
+
+	public String getPsetNamespace() {
+		return psetNamespace;
+	}
+
+	public void setPsetNamespace(String psetNamespace) {
+		this.psetNamespace = psetNamespace;
+	}
+
+	/*
+	 * The inverse attributes that are written as triples too, a comma separated list of their names such as
+	 * "IsDefinedBy,ContainedInStructure,HasOpenings", or "all". The triple of an inverse attribute goes from the referenced
+	 * entity back to the referencing one with the ifcOWL property of the attribute. Null writes no inverse triples.
+	 */
+	public String getInverses() {
+		return inverses;
+	}
+
+	public void setInverses(String inverses) {
+		this.inverses = inverses;
+	}
+
+	/*
+	 * Writes the transitive closure of the spatial decomposition and containment: every object gets a
+	 * SpatialIndex.CONTAINED_IN triple to each IfcSpatialStructureElement (IFC4: IfcSpatialElement) above it, through
+	 * IfcRelAggregates and IfcRelContainedInSpatialStructure, so "all the elements of a storey" is one triple pattern.
+	 */
+	public boolean isSpatialClosure() {
+		return spatialClosure;
+	}
+
+	public void setSpatialClosure(boolean spatialClosure) {
+		this.spatialClosure = spatialClosure;
+	}
+
+	/*
+	 * Writes the axis aligned bounding box of every IfcProduct in world coordinates as one BoundingBoxes.BOUNDING_BOX
+	 * literal, "minX minY minZ, maxX maxY maxZ" in the length unit of the file. The boxes are computed from the parsed
+	 * model, so the file is read into memory as with -inMemory.
+	 */
+	public boolean isBoundingBoxes() {
+		return boundingBoxes;
+	}
+
+	public void setBoundingBoxes(boolean boundingBoxes) {
+		this.boundingBoxes = boundingBoxes;
+	}
+
+	/*
+	 * The directory of a TDB dataset that the stream converter loads the triples into, instead of writing them to the output
+	 * file. Every IFC file gets its own named graph, named by the file URI, so several files can be loaded into one
+	 * dataset. Null writes the output file.
+	 */
+	public String getTdb() {
+		return tdb;
+	}
+
+	public void setTdb(String tdb) {
+		this.tdb = tdb;
+	}
+
+	/*
+	 * Writes the output as RDF Thrift instead of TTL: the stream converter writes the output file in it, the model
+	 * converter writes a .trdf file instead of the .ttl and .rdf files. IfcReader.readModel() reads it back.
+	 */
+	public boolean isThrift() {
+		return thrift;
+	}
+
+	public void setThrift(boolean thrift) {
+		this.thrift = thrift;
+	}
+
+	/*
+	 * Writes the output as a dictionary of the terms and bit packed, indexed triples, see HdtTripleSink, instead of TTL:
+	 * the stream converter writes the output file in it, the model converter writes a .hdt file instead of the .ttl and
+	 * .rdf files. It goes before -thrift. HdtFile reads it and finds the triples of a pattern without a Model.
+	 */
+	public boolean isHdt() {
+		return hdt;
+	}
+
+	public void setHdt(boolean hdt) {
+		this.hdt = hdt;
+	}
+
+	/*
+	 * The formats, ttl,rdf for example, that the output is written in at the same time, each into a file named by the
+	 * output file with the extension of the format, see MultiFormatWriter. It goes before -hdt and -thrift. Null writes
+	 * the output file in one format; the model converter then writes .ttl and .rdf as with "ttl,rdf".
+	 */
+	public String getFormats() {
+		return formats;
+	}
+
+	public void setFormats(String formats) {
+		this.formats = formats;
+	}
+
+	/*
+	 * Compresses the output files as gzip files of independent blocks, on getThreads() threads, see
+	 * ParallelGzipOutputStream. .gz is added to the names of the files.
+	 */
+	public boolean isGzip() {
+		return gzip;
+	}
+
+	public void setGzip(boolean gzip) {
+		this.gzip = gzip;
+	}
+}
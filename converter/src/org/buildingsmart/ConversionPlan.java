@@ -0,0 +1,443 @@
+package org.buildingsmart;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.ontology.ConversionException;
+import org.apache.jena.ontology.OntClass;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntProperty;
+import org.apache.jena.ontology.OntResource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDFS;
+import org.buildingsmart.vo.AttributeVO;
+import org.buildingsmart.vo.EntityVO;
+import org.buildingsmart.vo.InverseVO;
+import org.buildingsmart.vo.TypeVO;
+
+/*
+ * ConversionPlan answers once per schema the ontology questions the converters ask for every attribute of every instance:
+ * the ifcOWL property of an attribute, whether its range is an ENUMERATION, a SELECT or an OWLList, the XSD datatype and
+ * the express:hasXXX value property of the range, the individuals of an enumeration by their label, and the content type
+ * of a list. The answers for every entity and type of the schema are compiled when the plan is made, so the parallel
+ * emitters never wait for each other on a lock, after that the converters only read the fields of the EntityPlan,
+ * AttributePlan and RangePlan objects and make no calls to the ontology models.
+ * The inverse property of a reference depends on the referenced entity as well, it is compiled for every pair of the
+ * attribute and the type of the referenced entity.
+ *
+ * The usage:
+ * ConversionPlan plan = ConversionPlan.forSchema(ontModel, expressModel, listModel, ontNS, ent, typ);
+ * ConversionPlan.EntityPlan entityPlan = plan.getEntity(evo);
+ * ConversionPlan.AttributePlan attribute = entityPlan.getAttribute(attribute_pointer);
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class ConversionPlan {
+	private static final String EXPRESS_NS = "https://w3id.org/express#";
+	private static final String LIST_NS = "https://w3id.org/list#";
+	// the datatypes of the compact list literals, one per list class: IfcLengthMeasure_List, INTEGER_List_List, ...
+	public static final String DATATYPE_NS = "http://linkedbuildingdata.net/ifc/datatypes#";
+	// a deeper list of numbers is written as a chain of list resources
+	private static final int MAX_COMPACT_DEPTH = 3;
+
+	// the EXPRESS simple types in the order getXSDTypeFromRange() tested them
+	private static final String[] SIMPLE_TYPES = { "STRING", "REAL", "INTEGER", "BINARY", "BOOLEAN", "LOGICAL", "NUMBER" };
+	private static final String[] XSD_TYPES = { "string", "double", "integer", "hexBinary", "boolean", "logical", "double" };
+
+	// one plan per ifcOWL namespace, the readers load the same ontology of a schema again for every file, and a plan keeps
+	// the models it was compiled from, so the few schemas bound the cache
+	private static final Map<String, ConversionPlan> plans = new HashMap<String, ConversionPlan>();
+
+	private final OntModel ontModel;
+	private final OntModel expressModel;
+	private final String ontNS;
+	private final OntClass enumerationClass;
+	private final OntClass selectClass;
+	private final OntClass owlListClass;
+	private final OntClass[] simpleTypeClasses = new OntClass[SIMPLE_TYPES.length];
+	private final OntClass[] simpleListClasses = new OntClass[SIMPLE_TYPES.length];
+	private final OntResource[] simpleTypeResources = new OntResource[SIMPLE_TYPES.length];
+
+	final Node hasContents;
+	final Node hasNext;
+	final Node logicalTrue;
+	final Node logicalFalse;
+	final Node logicalUnknown;
+
+	// filled when the plan is made and only read after that, a type that is missing from the ontology has a null range
+	private final Map<String, EntityPlan> entities = new HashMap<String, EntityPlan>();
+	private final Map<String, RangePlan> types = new HashMap<String, RangePlan>();
+	// referenced entity name and attribute property -> the inverse property, NO_INVERSE when there is none
+	private final Map<String, Node> inverses = new ConcurrentHashMap<String, Node>();
+	private static final Node NO_INVERSE = NodeFactory.createURI(EXPRESS_NS + "NoInverse");
+	// the names outside the schema, under the lock of the plan
+	private final Map<String, EntityPlan> missingEntities = new HashMap<String, EntityPlan>();
+	private final Map<String, RangePlan> missingTypes = new HashMap<String, RangePlan>();
+	// only used while compiling, under the lock of forSchema() or of the plan
+	private final Map<OntResource, RangePlan> ranges = new HashMap<OntResource, RangePlan>();
+
+	public static ConversionPlan forSchema(OntModel ontModel, OntModel expressModel, OntModel listModel, String ontNS,
+			Map<String, EntityVO> ent, Map<String, TypeVO> typ) {
+		synchronized (plans) {
+			ConversionPlan plan = plans.get(ontNS);
+			if (plan == null) {
+				plan = new ConversionPlan(ontModel, expressModel, listModel, ontNS);
+				for (EntityVO evo : ent.values())
+					plan.compileEntity(evo);
+				for (TypeVO type : typ.values())
+					plan.compileType(type);
+				plans.put(ontNS, plan);
+			}
+			return plan;
+		}
+	}
+
+	private ConversionPlan(OntModel ontModel, OntModel expressModel, OntModel listModel, String ontNS) {
+		this.ontModel = ontModel;
+		this.expressModel = expressModel;
+		this.ontNS = ontNS;
+		enumerationClass = expressModel.getOntClass(EXPRESS_NS + "ENUMERATION");
+		selectClass = expressModel.getOntClass(EXPRESS_NS + "SELECT");
+		owlListClass = listModel.getOntClass(LIST_NS + "OWLList");
+		for (int i = 0; i < SIMPLE_TYPES.length; i++) {
+			simpleTypeClasses[i] = expressModel.getOntClass(EXPRESS_NS + SIMPLE_TYPES[i]);
+			simpleListClasses[i] = expressModel.getOntClass(EXPRESS_NS + SIMPLE_TYPES[i] + "_List");
+			simpleTypeResources[i] = expressModel.getOntResource(EXPRESS_NS + SIMPLE_TYPES[i]);
+		}
+		hasContents = NodeFactory.createURI(LIST_NS + "hasContents");
+		hasNext = NodeFactory.createURI(LIST_NS + "hasNext");
+		logicalTrue = NodeFactory.createURI(EXPRESS_NS + "TRUE");
+		logicalFalse = NodeFactory.createURI(EXPRESS_NS + "FALSE");
+		logicalUnknown = NodeFactory.createURI(EXPRESS_NS + "UNKNOWN");
+	}
+
+	public EntityPlan getEntity(EntityVO evo) {
+		EntityPlan plan = entities.get(evo.getName());
+		if (plan == null)
+			plan = compileMissingEntity(evo);
+		return plan;
+	}
+
+	/*
+	 * The ifcOWL property of the inverse attribute that the given attribute fills in the referenced entity, for example
+	 * isDefinedBy_IfcObject for the RelatedObjects of an IfcRelDefinesByProperties and an IfcWall. The inverse is declared by
+	 * the referenced entity or one of its supertypes in ent. Null when the attribute has no inverse or the referenced entity
+	 * does not have it.
+	 */
+	public Node getInverse(EntityVO target, AttributePlan attribute, Map<String, EntityVO> ent) {
+		if (attribute.inverseName == null)
+			return null;
+		String key = target.getName() + "\u0000" + attribute.property.getURI();
+		Node inverse = inverses.get(key);
+		if (inverse == null) {
+			InverseVO declared = null;
+			// the supertype chain of EXPRESS is a tree, but a broken schema should not hang the conversion
+			Set<EntityVO> seen = new HashSet<EntityVO>();
+			EntityVO evo = target;
+			while (evo != null && declared == null && seen.add(evo)) {
+				for (InverseVO inv : evo.getDerived_inverse_list())
+					if (inv.getName().equals(attribute.inverseName) && inv.getInverseOfProperty().equals(attribute.inverseOf))
+						declared = inv;
+				evo = evo.getSuperclass() == null ? null : ent.get(ExpressReader.formatClassName(evo.getSuperclass()));
+			}
+			inverse = NO_INVERSE;
+			if (declared != null && declared.getAssociatedProperty() != null) {
+				// ifcOWL leaves out some inverses, such as ContainedInStructure, their IRIs are named the same way
+				String name = declared.getAssociatedProperty().getName();
+				inverse = NodeFactory.createURI(ontNS + Character.toLowerCase(name.charAt(0)) + name.substring(1));
+			}
+			inverses.put(key, inverse);
+		}
+		return inverse == NO_INVERSE ? null : inverse;
+	}
+
+	/*
+	 * The range of a defined type written in front of a value, as IFCLABEL in IFCLABEL('abc'), or null when the ontology
+	 * does not have it
+	 */
+	public RangePlan getType(TypeVO typ) {
+		RangePlan plan = types.get(typ.getName());
+		if (plan == null && !types.containsKey(typ.getName()))
+			plan = compileMissingType(typ);
+		return plan;
+	}
+
+	/*
+	 * An entity or a type that is not in the EXPRESS schema the plan was made for, compiled when it is met. The converters
+	 * only meet the names of the schema, this keeps a plan correct when it is asked for another one.
+	 */
+	private synchronized EntityPlan compileMissingEntity(EntityVO evo) {
+		EntityPlan plan = missingEntities.get(evo.getName());
+		if (plan == null) {
+			plan = newEntityPlan(evo);
+			missingEntities.put(evo.getName(), plan);
+		}
+		return plan;
+	}
+
+	private synchronized RangePlan compileMissingType(TypeVO typ) {
+		if (missingTypes.containsKey(typ.getName()))
+			return missingTypes.get(typ.getName());
+		RangePlan plan = compileRange(ontModel.getOntResource(ontNS + typ.getName()));
+		missingTypes.put(typ.getName(), plan);
+		return plan;
+	}
+
+	private void compileEntity(EntityVO evo) {
+		entities.put(evo.getName(), newEntityPlan(evo));
+	}
+
+	private void compileType(TypeVO typ) {
+		types.put(typ.getName(), compileRange(ontModel.getOntResource(ontNS + typ.getName())));
+	}
+
+	private EntityPlan newEntityPlan(EntityVO evo) {
+		List<AttributeVO> list = evo.getDerived_attribute_list();
+		AttributePlan[] attributes = new AttributePlan[list == null ? 0 : list.size()];
+		for (int i = 0; i < attributes.length; i++) {
+			AttributeVO attribute = list.get(i);
+			OntProperty p = ontModel.getOntProperty(ontNS + attribute.getLowerCaseName());
+			if (p != null)
+				attributes[i] = new AttributePlan(p.asNode(), compileRange(p.getRange()), attribute.getPoints_from());
+		}
+		OntClass type = ontModel.getOntClass(ontNS + evo.getName());
+		return new EntityPlan(type == null ? null : type.asNode(), attributes);
+	}
+
+	private RangePlan compileRange(OntResource range) {
+		if (range == null)
+			return null;
+		RangePlan plan = ranges.get(range);
+		if (plan == null) {
+			plan = new RangePlan(range);
+			ranges.put(range, plan);
+			plan.compile();
+		}
+		return plan;
+	}
+
+	private String getXSDTypeFromRange(OntResource range) {
+		OntClass c = range.asClass();
+		for (int i = 0; i < SIMPLE_TYPES.length; i++)
+			if ((EXPRESS_NS + SIMPLE_TYPES[i]).equalsIgnoreCase(c.getURI()) || c.hasSuperClass(simpleTypeClasses[i]))
+				return XSD_TYPES[i];
+		return null;
+	}
+
+	private String getXSDTypeFromRangeExpensiveMethod(OntResource range) {
+		ExtendedIterator<OntClass> iter = range.asClass().listSuperClasses();
+		while (iter.hasNext()) {
+			String type = getXSDTypeFromRange(iter.next());
+			if (type != null)
+				return type;
+		}
+		return null;
+	}
+
+	private OntResource getListContentType(OntClass range) {
+		for (int i = 0; i < SIMPLE_TYPES.length; i++)
+			if ((EXPRESS_NS + SIMPLE_TYPES[i] + "_List").equalsIgnoreCase(range.getURI()) || range.hasSuperClass(simpleListClasses[i]))
+				return simpleTypeResources[i];
+		if (range.hasSuperClass(owlListClass))
+			return getListElementType(range);
+		return null;
+	}
+
+	// the IFC class of the elements of an ifcOWL list class, IfcCartesianPoint for IfcCartesianPoint_List, or the EXPRESS
+	// list of an EXPRESS list of lists, INTEGER_List for INTEGER_List_List
+	private OntResource getListElementType(OntResource range) {
+		String name = range.getLocalName();
+		if (name == null || name.length() < 5)
+			return null;
+		if (EXPRESS_NS.equals(range.getNameSpace()))
+			return expressModel.getOntResource(EXPRESS_NS + name.substring(0, name.length() - 5));
+		return ontModel.getOntResource(ontNS + name.substring(0, name.length() - 5));
+	}
+
+	private static XSDDatatype getDatatype(String xsdType) {
+		if ("integer".equals(xsdType))
+			return XSDDatatype.XSDinteger;
+		else if ("double".equals(xsdType))
+			return XSDDatatype.XSDdouble;
+		else if ("hexBinary".equals(xsdType))
+			return XSDDatatype.XSDhexBinary;
+		else if ("string".equals(xsdType))
+			return XSDDatatype.XSDstring;
+		else
+			return null;
+	}
+
+	public static class EntityPlan {
+		// the ifcOWL class of the entity, null when the ontology does not have it
+		final Node type;
+		private final AttributePlan[] attributes;
+		// the attributes that are written as a whole from their tokens, see ConversionEngine: the lists of lists, and also
+		// the lists of numbers when they are written as compact literals
+		final boolean[] nestedLists;
+		final boolean[] numericLists;
+
+		EntityPlan(Node type, AttributePlan[] attributes) {
+			this.type = type;
+			this.attributes = attributes;
+			nestedLists = new boolean[attributes.length];
+			numericLists = new boolean[attributes.length];
+			for (int n = 0; n < attributes.length; n++) {
+				RangePlan range = attributes[n] == null ? null : attributes[n].range;
+				nestedLists[n] = range != null && range.isListOfList;
+				numericLists[n] = nestedLists[n] || (range != null && range.compactDatatype != null);
+			}
+		}
+
+		/*
+		 * The plan of the n-th attribute, or null when the entity has no such attribute or the ontology misses its property
+		 */
+		AttributePlan getAttribute(int n) {
+			return n < attributes.length ? attributes[n] : null;
+		}
+	}
+
+	public static class AttributePlan {
+		final Node property;
+		// null when the property has no range
+		final RangePlan range;
+		// the inverse attribute that refers back, IsDefinedBy for RelatedObjects, and the original name of this attribute,
+		// null when there is none
+		final String inverseName;
+		final String inverseOf;
+
+		AttributePlan(Node property, RangePlan range, InverseVO inverse) {
+			this.property = property;
+			this.range = range;
+			this.inverseName = inverse == null ? null : inverse.getName();
+			this.inverseOf = inverse == null ? null : inverse.getInverseOfProperty();
+		}
+	}
+
+	public class RangePlan {
+		private final OntResource resource;
+		final Node node;
+		final String localName;
+		final boolean isClass;
+		boolean isEnumeration;
+		boolean isSelect;
+		boolean isList;
+		// null when the range does not map to a literal
+		String xsdType;
+		XSDDatatype datatype;
+		Node valueProperty;
+		// a list range: the IFC class of its elements and whether they are lists themselves
+		RangePlan elementType;
+		boolean isListOfList;
+		// a list range: the range of its literal contents, null when the schema does not tell
+		RangePlan contentType;
+		// a list of numbers, or of lists of numbers: the datatype of its compact literal, null for other ranges, and the
+		// nesting depth of the lists
+		RDFDatatype compactDatatype;
+		int compactDepth;
+		boolean compactIntegers;
+		// an enumeration: its individuals by their upper case label
+		private final Map<String, Node> individuals = new HashMap<String, Node>();
+
+		RangePlan(OntResource range) {
+			this.resource = range;
+			this.node = range.asNode();
+			this.localName = range.getLocalName();
+			this.isClass = range.isClass();
+		}
+
+		private void compile() {
+			if (!isClass)
+				return;
+			OntClass c = resource.asClass();
+			isEnumeration = c.hasSuperClass(enumerationClass);
+			isSelect = c.hasSuperClass(selectClass);
+			isList = c.hasSuperClass(owlListClass);
+
+			// the converters only ask for the literal type of the other ranges, and the superclasses of a list are not
+			// all classes
+			if (!isEnumeration && !isSelect && !isList) {
+				try {
+					xsdType = getXSDTypeFromRange(resource);
+					if (xsdType == null)
+						xsdType = getXSDTypeFromRangeExpensiveMethod(resource);
+				} catch (ConversionException e) {
+					// a superclass such as express:INTEGER_List is not declared as a class, the range is a list then
+					xsdType = null;
+				}
+			}
+			if (xsdType != null) {
+				String xsdTypeCAP = Character.toUpperCase(xsdType.charAt(0)) + xsdType.substring(1);
+				OntProperty p = expressModel.getOntProperty(EXPRESS_NS + "has" + xsdTypeCAP);
+				valueProperty = p == null ? null : p.asNode();
+				datatype = getDatatype(xsdType);
+			}
+
+			if (isEnumeration) {
+				for (ExtendedIterator<? extends OntResource> instances = c.listInstances(); instances.hasNext();) {
+					OntResource instance = instances.next();
+					Statement label = instance.getProperty(RDFS.label);
+					if (label == null)
+						continue;
+					String key = label.getString().toUpperCase(Locale.ROOT);
+					// the first individual with a label wins, as the linear search did
+					if (!individuals.containsKey(key))
+						individuals.put(key, instance.asNode());
+				}
+			}
+
+			if (isList) {
+				elementType = compileRange(getListElementType(resource));
+				isListOfList = elementType != null && elementType.isClass && elementType.resource.asClass().hasSuperClass(owlListClass);
+			}
+			contentType = compileRange(getListContentType(c));
+
+			if (isList) {
+				RangePlan content = contentType;
+				int depth = 1;
+				while (content != null && content.isList && depth < MAX_COMPACT_DEPTH) {
+					content = content.contentType;
+					depth++;
+				}
+				if (content != null && !content.isList && ("double".equals(content.xsdType) || "integer".equals(content.xsdType))) {
+					compactDatatype = TypeMapper.getInstance().getSafeTypeByName(DATATYPE_NS + localName);
+					compactDepth = depth;
+					compactIntegers = "integer".equals(content.xsdType);
+				}
+			}
+		}
+
+		/*
+		 * The enumeration individual with the given label (without the surrounding dots), or null
+		 */
+		Node getIndividual(String label) {
+			return individuals.get(label.toUpperCase(Locale.ROOT));
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package org.buildingsmart;
+
+import org.apache.jena.graph.Node;
+
+/*
+ * CountingTripleSink counts the triples and passes them on to another sink, or drops them when there is none. Without a
+ * next sink it measures the conversion alone, without the cost of a Model or a writer.
+ *
+ * The usage:
+ * CountingTripleSink counter = new CountingTripleSink();
+ * engine.convert(counter);
+ * System.out.println(counter.getCount() + " triples");
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class CountingTripleSink implements TripleSink {
+	private final TripleSink next;
+	private long count = 0;
+
+	public CountingTripleSink() {
+		this(null);
+	}
+
+	public CountingTripleSink(TripleSink next) {
+		this.next = next;
+	}
+
+	@Override
+	public void triple(Node subject, Node predicate, Node object) {
+		count++;
+		if (next != null)
+			next.triple(subject, predicate, object);
+	}
+
+	public long getCount() {
+		return count;
+	}
+}
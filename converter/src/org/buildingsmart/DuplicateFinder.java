@@ -0,0 +1,233 @@
+package org.buildingsmart;
+
+import java.util.Arrays;
+
+import org.buildingsmart.vo.IFCVO;
+
+/*
+ * DuplicateFinder finds the lines of an IFC file that describe the same thing. It keeps for every line only a 128 bit
+ * fingerprint of the attributes without the references, and the line numbers of the references, so the lines themselves
+ * can be dropped after add().
+ * In the first round two lines are duplicates when the fingerprint and the referenced line numbers are equal, i.e. the
+ * lines are equal after the '#id='. A structural search goes on with rounds in which every reference counts as the line
+ * that is kept in its place, so two IfcPolyLoops that refer to different but equal IfcCartesianPoints become duplicates in
+ * the second round, the faces that refer to them in the third, and so on until a round finds nothing new.
+ * The line that is kept for a group of duplicates is the one with the smallest line number.
+ *
+ * The usage:
+ * DuplicateFinder finder = new DuplicateFinder();
+ * for (IFCVO vo : linemap)
+ *     finder.add(vo);
+ * int duplicates = finder.resolve(structural);
+ * long kept = finder.getCanonical(123);
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class DuplicateFinder {
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private int count = 0;
+	private long[] ids = new long[INITIAL_CAPACITY];
+	// two longs per line
+	private long[] fingerprints = new long[2 * INITIAL_CAPACITY];
+	// the references of line i are refs[refStart[i]] to refs[refStart[i + 1]]
+	private int[] refStart = new int[INITIAL_CAPACITY + 1];
+	private long[] refs = new long[4 * INITIAL_CAPACITY];
+
+	// line number -> index of the line, open addressing
+	private long[] positionKeys;
+	private int[] positions;
+	private int positionMask;
+
+	// the kept line number of every line, after resolve()
+	private long[] canonical;
+	private int rounds = 0;
+
+	private final long[] fingerprint = new long[2];
+
+	public void add(IFCVO vo) {
+		if (count == ids.length) {
+			ids = Arrays.copyOf(ids, count * 2);
+			fingerprints = Arrays.copyOf(fingerprints, count * 4);
+			refStart = Arrays.copyOf(refStart, count * 2 + 1);
+		}
+		int start = refStart[count];
+		if (start + vo.getAttributeTokenCount() > refs.length)
+			refs = Arrays.copyOf(refs, Math.max(refs.length * 2, start + vo.getAttributeTokenCount()));
+		vo.structureFingerprint(fingerprint);
+		ids[count] = vo.getLine_num();
+		fingerprints[2 * count] = fingerprint[0];
+		fingerprints[2 * count + 1] = fingerprint[1];
+		refStart[count + 1] = start + vo.copyReferences(refs, start);
+		count++;
+	}
+
+	/*
+	 * Groups the lines and returns the number of lines that are duplicates of a kept line. Without structural only the
+	 * first round is done.
+	 */
+	public int resolve(boolean structural) {
+		indexPositions();
+		canonical = Arrays.copyOf(ids, count);
+		int capacity = Integer.highestOneBit(Math.max(1, count) * 2) * 2;
+		int mask = capacity - 1;
+		long[] keys = new long[2 * capacity];
+		long[] smallest = new long[capacity];
+		boolean[] used = new boolean[capacity];
+		int[] slots = new int[count];
+
+		int groups = count;
+		rounds = 0;
+		while (true) {
+			rounds++;
+			Arrays.fill(used, false);
+			int found = 0;
+			for (int i = 0; i < count; i++) {
+				long h1 = fingerprints[2 * i];
+				long h2 = fingerprints[2 * i + 1];
+				for (int r = refStart[i]; r < refStart[i + 1]; r++) {
+					long kept = canonicalOf(refs[r]);
+					h1 = ContentHash.mix1(h1, kept);
+					h2 = ContentHash.mix2(h2, kept);
+				}
+				h1 = ContentHash.fmix(h1);
+				h2 = ContentHash.fmix(h2);
+
+				int n = (int) (h1 ^ (h1 >>> 32)) & mask;
+				while (used[n] && (keys[2 * n] != h1 || keys[2 * n + 1] != h2))
+					n = (n + 1) & mask;
+				if (!used[n]) {
+					used[n] = true;
+					keys[2 * n] = h1;
+					keys[2 * n + 1] = h2;
+					smallest[n] = ids[i];
+					found++;
+				} else if (ids[i] < smallest[n])
+					smallest[n] = ids[i];
+				slots[i] = n;
+			}
+			// the next round reads the kept lines of this one, so they are set only after all the fingerprints
+			for (int i = 0; i < count; i++)
+				canonical[i] = smallest[slots[i]];
+			// the groups only grow from round to round, the same number of groups is the same grouping
+			boolean fixed = found == groups;
+			groups = found;
+			if (!structural || fixed)
+				break;
+		}
+		return count - groups;
+	}
+
+	/*
+	 * The line that is kept in place of this one, the line itself when it is not a duplicate or is not known
+	 */
+	public long getCanonical(long id) {
+		int position = positionOf(id);
+		return position < 0 ? id : canonical[position];
+	}
+
+	/*
+	 * The kept lines that have duplicates with the number of their duplicates, as pairs in the order of the lines:
+	 * {line, duplicates, line, duplicates, ...}. It is small enough to keep while the instances are written, see
+	 * duplicatesOf().
+	 */
+	public long[] getMergedCounts() {
+		long[] kept = new long[count];
+		int n = 0;
+		for (int i = 0; i < count; i++)
+			if (canonical[i] != ids[i])
+				kept[n++] = canonical[i];
+		Arrays.sort(kept, 0, n);
+		long[] pairs = new long[2 * n];
+		int m = 0;
+		for (int i = 0; i < n; i++) {
+			if (m > 0 && pairs[m - 2] == kept[i])
+				pairs[m - 1]++;
+			else {
+				pairs[m++] = kept[i];
+				pairs[m++] = 1;
+			}
+		}
+		return Arrays.copyOf(pairs, m);
+	}
+
+	/*
+	 * The number of duplicates of the line in the pairs of getMergedCounts(), 0 when it has none
+	 */
+	public static int duplicatesOf(long[] merged, long line) {
+		int low = 0;
+		int high = merged.length / 2 - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long value = merged[2 * middle];
+			if (value < line)
+				low = middle + 1;
+			else if (value > line)
+				high = middle - 1;
+			else
+				return (int) merged[2 * middle + 1];
+		}
+		return 0;
+	}
+
+	public int getRounds() {
+		return rounds;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	// a reference to a line that does not exist stays as it is
+	private long canonicalOf(long id) {
+		int position = positionOf(id);
+		return position < 0 ? id : canonical[position];
+	}
+
+	private void indexPositions() {
+		int capacity = Integer.highestOneBit(Math.max(1, count) * 2) * 2;
+		positionKeys = new long[capacity];
+		positions = new int[capacity];
+		Arrays.fill(positions, -1);
+		positionMask = capacity - 1;
+		for (int i = 0; i < count; i++) {
+			int slot = hash(ids[i]) & positionMask;
+			while (positions[slot] >= 0 && positionKeys[slot] != ids[i])
+				slot = (slot + 1) & positionMask;
+			// a repeated line number counts as its last line, as in the EntityTable
+			positionKeys[slot] = ids[i];
+			positions[slot] = i;
+		}
+	}
+
+	private int positionOf(long id) {
+		int slot = hash(id) & positionMask;
+		while (positions[slot] >= 0) {
+			if (positionKeys[slot] == id)
+				return positions[slot];
+			slot = (slot + 1) & positionMask;
+		}
+		return -1;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -0,0 +1,187 @@
+package org.buildingsmart;
+
+/*
+ * EntityIndex is the small per-entity record of the streaming conversion: for every STEP line number it keeps the
+ * SymbolTable id of the entity type and one long value, in primitive arrays. Like EntityTable it starts as arrays indexed
+ * by the id and switches to open addressing when the ids are sparse or negative.
+ *
+ * During the first pass the value is the line number itself. resolveDuplicates() then replaces it by the line number of
+ * the line that the DuplicateFinder keeps in its place.
+ *
+ * The usage:
+ * EntityIndex index = new EntityIndex();
+ * index.put(ifcvo.getLine_num(), ifcvo.getType(), ifcvo.getLine_num());
+ * finder.add(ifcvo);
+ * finder.resolve(structural);
+ * int duplicates = index.resolveDuplicates(finder);
+ * long kept = index.getCanonical(123);
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class EntityIndex {
+	private static final int INITIAL_CAPACITY = 1024;
+	// the dense arrays may be at most this many times larger than the number of entities
+	private static final int MAX_SPARSENESS = 4;
+	private static final int MAX_DENSE_CAPACITY = Integer.MAX_VALUE - 8;
+
+	private int size = 0;
+	private boolean dense = true;
+
+	// type + 1 per slot, 0 marks an empty slot
+	private int[] types = new int[INITIAL_CAPACITY];
+	private long[] values = new long[INITIAL_CAPACITY];
+	// hashed mode only: the line number of each slot
+	private long[] keys;
+	private int mask;
+
+	public void put(long id, int type, long value) {
+		int slot = slotFor(id);
+		if (types[slot] == 0)
+			size++;
+		types[slot] = type + 1;
+		values[slot] = value;
+	}
+
+	public boolean contains(long id) {
+		return find(id) >= 0;
+	}
+
+	/*
+	 * SymbolTable id of the entity type, or -1 when the line does not exist
+	 */
+	public int getType(long id) {
+		int slot = find(id);
+		return slot < 0 ? -1 : types[slot] - 1;
+	}
+
+	/*
+	 * Line number of the line that is kept in place of this one, or Long.MIN_VALUE when the line does not exist.
+	 * Only valid after resolveDuplicates().
+	 */
+	public long getCanonical(long id) {
+		int slot = find(id);
+		return slot < 0 ? Long.MIN_VALUE : values[slot];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * Replaces the line number of every line by the line that the finder keeps in its place and returns the number of lines
+	 * that are duplicates of another one
+	 */
+	public int resolveDuplicates(DuplicateFinder finder) {
+		int duplicates = 0;
+		for (int slot = 0; slot < types.length; slot++) {
+			if (types[slot] == 0)
+				continue;
+			long id = dense ? slot : keys[slot];
+			values[slot] = finder.getCanonical(id);
+			if (values[slot] != id)
+				duplicates++;
+		}
+		return duplicates;
+	}
+
+	private int find(long id) {
+		if (dense)
+			return (id >= 0 && id < types.length && types[(int) id] != 0) ? (int) id : -1;
+		int slot = hash(id) & mask;
+		while (types[slot] != 0) {
+			if (keys[slot] == id)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	// the slot of id, made room for when the line is new
+	private int slotFor(long id) {
+		if (dense) {
+			if (id >= 0 && id < types.length)
+				return (int) id;
+			if (id >= 0 && id < MAX_DENSE_CAPACITY && id < (long) MAX_SPARSENESS * (size + 1) + INITIAL_CAPACITY) {
+				long capacity = types.length;
+				while (capacity <= id)
+					capacity *= 2;
+				resizeDense((int) Math.min(capacity, MAX_DENSE_CAPACITY));
+				return (int) id;
+			}
+			toHashed();
+		}
+		if ((size + 1) * 2 > types.length)
+			rehash(types.length * 2);
+		int slot = hash(id) & mask;
+		while (types[slot] != 0 && keys[slot] != id)
+			slot = (slot + 1) & mask;
+		keys[slot] = id;
+		return slot;
+	}
+
+	private void resizeDense(int capacity) {
+		int[] largerTypes = new int[capacity];
+		long[] largerValues = new long[capacity];
+		System.arraycopy(types, 0, largerTypes, 0, types.length);
+		System.arraycopy(values, 0, largerValues, 0, values.length);
+		types = largerTypes;
+		values = largerValues;
+	}
+
+	private void toHashed() {
+		int[] oldTypes = types;
+		long[] oldValues = values;
+		dense = false;
+		allocateHashed(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, size) * 4)));
+		for (int id = 0; id < oldTypes.length; id++)
+			if (oldTypes[id] != 0)
+				insertHashed(id, oldTypes[id], oldValues[id]);
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldTypes = types;
+		long[] oldValues = values;
+		allocateHashed(capacity);
+		for (int n = 0; n < oldTypes.length; n++)
+			if (oldTypes[n] != 0)
+				insertHashed(oldKeys[n], oldTypes[n], oldValues[n]);
+	}
+
+	private void allocateHashed(int capacity) {
+		keys = new long[capacity];
+		types = new int[capacity];
+		values = new long[capacity];
+		mask = capacity - 1;
+	}
+
+	private void insertHashed(long id, int type, long value) {
+		int slot = hash(id) & mask;
+		while (types[slot] != 0)
+			slot = (slot + 1) & mask;
+		keys[slot] = id;
+		types[slot] = type;
+		values[slot] = value;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -0,0 +1,231 @@
+package org.buildingsmart;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.buildingsmart.vo.IFCVO;
+
+/*
+ * EntityTable stores the IFCVO objects of an IFC file by their STEP line number (#id) without boxing the key.
+ * STEP ids are dense in practice, so the table starts as an array indexed by the id. When an id would leave that array
+ * mostly empty (or is negative), the table switches once to open addressing on a primitive long[] key array.
+ * Iteration visits the entities in id order as long as the table is dense.
+ *
+ * The usage:
+ * EntityTable linemap = new EntityTable();
+ * linemap.put(ifcvo.getLine_num(), ifcvo);
+ * IFCVO vo = linemap.get(123);
+ * for (IFCVO vo : linemap) { ... }
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class EntityTable implements Iterable<IFCVO> {
+	private static final int INITIAL_CAPACITY = 1024;
+	// the dense array may be at most this many times larger than the number of entities
+	private static final int MAX_SPARSENESS = 4;
+	private static final int MAX_DENSE_CAPACITY = Integer.MAX_VALUE - 8;
+
+	private int size = 0;
+
+	// dense mode: values[id]
+	private IFCVO[] values = new IFCVO[INITIAL_CAPACITY];
+	private boolean dense = true;
+
+	// hashed mode: keys[slot] / values[slot], an empty slot has a null value
+	private long[] keys;
+	private int mask;
+
+	public IFCVO get(long id) {
+		if (dense)
+			return (id >= 0 && id < values.length) ? values[(int) id] : null;
+		int slot = slot(id);
+		while (values[slot] != null) {
+			if (keys[slot] == id)
+				return values[slot];
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	public boolean containsKey(long id) {
+		return get(id) != null;
+	}
+
+	public void put(long id, IFCVO vo) {
+		if (vo == null) {
+			remove(id);
+			return;
+		}
+		if (dense) {
+			if (id >= 0 && id < values.length) {
+				if (values[(int) id] == null)
+					size++;
+				values[(int) id] = vo;
+				return;
+			}
+			if (id >= 0 && id < MAX_DENSE_CAPACITY && id < (long) MAX_SPARSENESS * (size + 1) + INITIAL_CAPACITY) {
+				growDense(id);
+				values[(int) id] = vo;
+				size++;
+				return;
+			}
+			toHashed();
+		}
+		if ((size + 1) * 2 > values.length)
+			rehash(values.length * 2);
+		int slot = slot(id);
+		while (values[slot] != null) {
+			if (keys[slot] == id) {
+				values[slot] = vo;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = id;
+		values[slot] = vo;
+		size++;
+	}
+
+	public IFCVO remove(long id) {
+		if (dense) {
+			if (id < 0 || id >= values.length || values[(int) id] == null)
+				return null;
+			IFCVO old = values[(int) id];
+			values[(int) id] = null;
+			size--;
+			return old;
+		}
+		int slot = slot(id);
+		while (values[slot] != null) {
+			if (keys[slot] == id) {
+				IFCVO old = values[slot];
+				deleteSlot(slot);
+				size--;
+				return old;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		values = new IFCVO[INITIAL_CAPACITY];
+		keys = null;
+		dense = true;
+		size = 0;
+	}
+
+	@Override
+	public Iterator<IFCVO> iterator() {
+		return new Iterator<IFCVO>() {
+			private int next = advance(0);
+
+			private int advance(int from) {
+				while (from < values.length && values[from] == null)
+					from++;
+				return from;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next < values.length;
+			}
+
+			@Override
+			public IFCVO next() {
+				if (next >= values.length)
+					throw new NoSuchElementException();
+				IFCVO vo = values[next];
+				next = advance(next + 1);
+				return vo;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private void growDense(long id) {
+		long capacity = values.length;
+		while (capacity <= id)
+			capacity *= 2;
+		IFCVO[] larger = new IFCVO[(int) Math.min(capacity, MAX_DENSE_CAPACITY)];
+		System.arraycopy(values, 0, larger, 0, values.length);
+		values = larger;
+	}
+
+	private void toHashed() {
+		IFCVO[] old = values;
+		dense = false;
+		allocateHashed(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, size) * 4)));
+		for (int id = 0; id < old.length; id++)
+			if (old[id] != null)
+				insertHashed(id, old[id]);
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		IFCVO[] oldValues = values;
+		allocateHashed(capacity);
+		for (int n = 0; n < oldValues.length; n++)
+			if (oldValues[n] != null)
+				insertHashed(oldKeys[n], oldValues[n]);
+	}
+
+	private void allocateHashed(int capacity) {
+		keys = new long[capacity];
+		values = new IFCVO[capacity];
+		mask = capacity - 1;
+	}
+
+	private void insertHashed(long id, IFCVO vo) {
+		int slot = slot(id);
+		while (values[slot] != null)
+			slot = (slot + 1) & mask;
+		keys[slot] = id;
+		values[slot] = vo;
+	}
+
+	// backward shift deletion keeps the probe sequences intact without tombstones
+	private void deleteSlot(int slot) {
+		int gap = slot;
+		int n = (slot + 1) & mask;
+		while (values[n] != null) {
+			int home = slot(keys[n]);
+			if (((n - home) & mask) >= ((n - gap) & mask)) {
+				keys[gap] = keys[n];
+				values[gap] = values[n];
+				gap = n;
+			}
+			n = (n + 1) & mask;
+		}
+		values[gap] = null;
+	}
+
+	private int slot(long id) {
+		long h = id * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+}
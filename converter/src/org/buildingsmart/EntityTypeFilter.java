@@ -0,0 +1,111 @@
+package org.buildingsmart;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.buildingsmart.vo.EntityVO;
+import org.buildingsmart.vo.SymbolTable;
+
+/*
+ * EntityTypeFilter decides which lines of an IFC file are converted, by the EXPRESS type of the entity. A type named in the
+ * filter stands for itself and all its subtypes: excluding IfcRepresentationItem prunes the IfcCartesianPoints, IfcPolyLoops,
+ * IfcFaces, IfcDirections and all the other geometry items. The nearest named type up the supertype chain decides, so a
+ * subtype can be included again below an excluded one. An entity without a named type is converted only when nothing is
+ * included.
+ * The decision is kept per SymbolTable id, so a filter can be asked for every line, also from several threads. A filter is
+ * always asked with the same SymbolTable.
+ *
+ * The usage:
+ * EntityTypeFilter filter = new EntityTypeFilter(ent, "IfcRoot,IfcRelationship", "IfcRepresentationItem");
+ * if (filter.accepts(ifcvo.getType(), symbols)) ...
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class EntityTypeFilter {
+	private final Map<String, EntityVO> ent;
+	// formatted names, as the keys of ent
+	private final Set<String> included;
+	private final Set<String> excluded;
+	// the decision for every SymbolTable id seen so far, replaced by a longer copy when a new name turns up
+	private volatile boolean[] accepted = new boolean[0];
+
+	/*
+	 * The types are comma separated entity names, null or empty for none
+	 */
+	public EntityTypeFilter(Map<String, EntityVO> ent, String includeTypes, String excludeTypes) {
+		this.ent = ent;
+		this.included = parseTypes(includeTypes);
+		this.excluded = parseTypes(excludeTypes);
+	}
+
+	/*
+	 * Whether the lines of the type with the given SymbolTable id are converted
+	 */
+	public boolean accepts(int type, SymbolTable symbols) {
+		boolean[] decisions = accepted;
+		if (type < decisions.length)
+			return decisions[type];
+		return grow(symbols)[type];
+	}
+
+	// decides the names interned since the last time
+	private synchronized boolean[] grow(SymbolTable symbols) {
+		boolean[] decisions = accepted;
+		int size = symbols.size();
+		if (size <= decisions.length)
+			return decisions;
+		boolean[] result = new boolean[size];
+		System.arraycopy(decisions, 0, result, 0, decisions.length);
+		for (int id = decisions.length; id < size; id++)
+			result[id] = decide(ExpressReader.formatClassName(symbols.getName(id)));
+		accepted = result;
+		return result;
+	}
+
+	private boolean decide(String type) {
+		// the supertype chain of EXPRESS is a tree, but a broken schema should not hang the conversion
+		Set<String> seen = new HashSet<String>();
+		while (type != null && seen.add(type)) {
+			if (excluded.contains(type))
+				return false;
+			if (included.contains(type))
+				return true;
+			EntityVO evo = ent.get(type);
+			type = evo == null ? null : ExpressReader.formatClassName(evo.getSuperclass());
+		}
+		return included.isEmpty();
+	}
+
+	private Set<String> parseTypes(String types) {
+		Set<String> result = new HashSet<String>();
+		if (types == null)
+			return result;
+		for (String name : types.split(",")) {
+			name = name.trim();
+			if (name.length() == 0)
+				continue;
+			String formatted = ExpressReader.formatClassName(name);
+			if (!ent.containsKey(formatted))
+				System.err.println("Type filter: " + name + " is not an entity of the schema");
+			result.add(formatted);
+		}
+		return result;
+	}
+}
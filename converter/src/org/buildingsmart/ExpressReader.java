@@ -21,6 +21,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.jena.ontology.OntModel;
 import org.apache.jena.ontology.OntModelSpec;
@@ -71,7 +72,8 @@ import fi.ni.rdf.Namespace;
 
 public class ExpressReader {
 
-	private static final Map<String, String> formattedClassNameCache = new HashMap<>();
+	// shared by all conversions, which can run on several threads
+	private static final Map<String, String> formattedClassNameCache = new ConcurrentHashMap<String, String>();
 	private Map<String, EntityVO> entities = new HashMap<String, EntityVO>();
 	private Map<String, TypeVO> types = new HashMap<String, TypeVO>();
 	private List<NamedIndividualVO> enumIndividuals = new ArrayList<NamedIndividualVO>();
@@ -0,0 +1,42 @@
+package org.buildingsmart;
+
+import org.apache.jena.graph.Node;
+
+/*
+ * FanOutTripleSink passes every triple to several sinks, in the order they are given, so one conversion can fill a Model
+ * and write a file at the same time.
+ *
+ * The usage:
+ * TripleSink sink = new FanOutTripleSink(new GraphTripleSink(model.getGraph()), new StreamTripleSink(writer));
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class FanOutTripleSink implements TripleSink {
+	private final TripleSink[] sinks;
+
+	public FanOutTripleSink(TripleSink... sinks) {
+		this.sinks = sinks.clone();
+	}
+
+	@Override
+	public void triple(Node subject, Node predicate, Node object) {
+		for (TripleSink sink : sinks)
+			sink.triple(subject, predicate, object);
+	}
+}
@@ -0,0 +1,43 @@
+package org.buildingsmart;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+
+/*
+ * GraphTripleSink adds the triples to a Jena Graph, for example the graph of an in-memory Model. Adding a triple that
+ * is already in the graph does nothing.
+ *
+ * The usage:
+ * TripleSink sink = new GraphTripleSink(model.getGraph());
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class GraphTripleSink implements TripleSink {
+	private final Graph graph;
+
+	public GraphTripleSink(Graph graph) {
+		this.graph = graph;
+	}
+
+	@Override
+	public void triple(Node subject, Node predicate, Node object) {
+		graph.add(new Triple(subject, predicate, object));
+	}
+}
@@ -0,0 +1,479 @@
+package org.buildingsmart;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+
+/*
+ * HdtFile reads a file written by HdtTripleSink and finds the triples of a pattern in it without building a Jena Model.
+ * The file has the layout of HDT (Header, Dictionary, Triples), without the header:
+ * - the dictionary: every term once, sorted by its UTF-8 bytes, the id of a term is its position. The terms are front
+ *   coded in blocks of BLOCK_SIZE, the first term of a block whole and every next one as the length of the prefix it
+ *   shares with the term before it and the rest, so the many IRIs with the same namespace and type take a few bytes each.
+ * - the triples, sorted by subject, predicate and object, as three layers: the subjects, for each subject its predicates
+ *   with a bitmap that marks the last predicate of a subject, and for each subject and predicate its objects with a
+ *   bitmap that marks the last object.
+ * - the object index: the positions in the object layer sorted by object.
+ * The ids are bit packed with as many bits as the largest one needs. A pattern with a subject is answered from the
+ * subject layer, one with an object and no subject from the object index, and one with only a predicate by a scan.
+ *
+ * The usage:
+ * HdtFile hdt = HdtFile.read(new File("model.hdt"));
+ * Iterator<Triple> it = hdt.find(subject, null, null);
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class HdtFile {
+	static final int MAGIC = 0x48445431; // "HDT1"
+	static final int BLOCK_SIZE = 16;
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final int termCount;
+	private final LogArray blocks;
+	private final byte[] dictionary;
+	private final LogArray subjects;
+	private final LogArray predicates;
+	private final LogArray objects;
+	private final LogArray objectIndex;
+	// the predicates of subject i are predicates[predicateStart[i]] to predicates[predicateStart[i + 1]], the objects of
+	// predicate j are objects[objectStart[j]] to objects[objectStart[j + 1]]
+	private final int[] predicateStart;
+	private final int[] objectStart;
+
+	private HdtFile(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC)
+			throw new IOException("not an HDT file of the converter");
+		termCount = in.readInt();
+		blocks = LogArray.read(in);
+		dictionary = new byte[in.readInt()];
+		in.readFully(dictionary);
+		subjects = LogArray.read(in);
+		predicates = LogArray.read(in);
+		predicateStart = starts(readBitmap(in), predicates.size(), subjects.size());
+		objects = LogArray.read(in);
+		objectStart = starts(readBitmap(in), objects.size(), predicates.size());
+		objectIndex = LogArray.read(in);
+	}
+
+	/*
+	 * Reads the file, a .gz file through gzip
+	 */
+	public static HdtFile read(File file) throws IOException {
+		InputStream stream = new FileInputStream(file);
+		if (file.getName().endsWith(".gz"))
+			stream = new GZIPInputStream(stream, 1 << 16);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+		try {
+			return new HdtFile(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	public int size() {
+		return objects.size();
+	}
+
+	public int getTermCount() {
+		return termCount;
+	}
+
+	/*
+	 * The triples that match the pattern, null or a variable matches every term
+	 */
+	public Iterator<Triple> find(Node subject, Node predicate, Node object) {
+		int s = bound(subject) ? getId(subject) : -1;
+		int p = bound(predicate) ? getId(predicate) : -1;
+		int o = bound(object) ? getId(object) : -1;
+		if ((bound(subject) && s < 0) || (bound(predicate) && p < 0) || (bound(object) && o < 0))
+			return new Matches(0, 0, false, -1, -1);
+		if (s >= 0) {
+			int row = subjects.search(s, 0, subjects.size());
+			if (row < 0)
+				return new Matches(0, 0, false, -1, -1);
+			return new Matches(objectStart[predicateStart[row]], objectStart[predicateStart[row + 1]], false, p, o).with(subject, predicate, object);
+		}
+		if (o >= 0) {
+			// the range of the object in the index, the positions are sorted by object
+			int from = 0, to = objectIndex.size();
+			while (from < to) {
+				int mid = (from + to) >>> 1;
+				if (objects.get(objectIndex.get(mid)) < o)
+					from = mid + 1;
+				else
+					to = mid;
+			}
+			int end = from;
+			while (end < objectIndex.size() && objects.get(objectIndex.get(end)) == o)
+				end++;
+			return new Matches(from, end, true, p, -1).with(null, predicate, object);
+		}
+		return new Matches(0, objects.size(), false, p, -1).with(null, predicate, null);
+	}
+
+	/*
+	 * The id of the term, -1 when it is not in the file
+	 */
+	public int getId(Node node) {
+		if (termCount == 0)
+			return -1;
+		byte[] key = encode(node);
+		// the last block whose first term is not after the key
+		int from = 0, to = blocks.size() - 1;
+		while (from < to) {
+			int mid = (from + to + 1) >>> 1;
+			int offset = blocks.get(mid);
+			int length = readVInt(dictionary, offset);
+			if (compare(dictionary, offset + vIntSize(length), length, key) <= 0)
+				from = mid;
+			else
+				to = mid - 1;
+		}
+		BlockReader block = new BlockReader(from);
+		for (int i = 0; i < BLOCK_SIZE && block.next(); i++) {
+			int c = compare(block.term, 0, block.length, key);
+			if (c == 0)
+				return from * BLOCK_SIZE + i;
+			if (c > 0)
+				break;
+		}
+		return -1;
+	}
+
+	public Node getTerm(int id) {
+		BlockReader block = new BlockReader(id / BLOCK_SIZE);
+		for (int i = 0; i <= id % BLOCK_SIZE; i++)
+			block.next();
+		return decode(new String(block.term, 0, block.length, UTF8));
+	}
+
+	private static boolean bound(Node node) {
+		return node != null && node.isConcrete();
+	}
+
+	/*
+	 * Goes through a range of the object layer, or of the object index, and keeps the triples of the pattern
+	 */
+	private class Matches implements Iterator<Triple> {
+		private int position;
+		private final int end;
+		private final boolean indexed;
+		private final int predicate;
+		private final int object;
+		// the current predicate and subject rows of a range of the object layer
+		private int predicateRow = -1;
+		private int subjectRow = -1;
+		private Triple next = null;
+		// the nodes of the pattern, they need not be decoded again
+		private Node subjectNode = null;
+		private Node predicateNode = null;
+		private Node objectNode = null;
+
+		Matches(int from, int to, boolean indexed, int predicate, int object) {
+			this.position = from;
+			this.end = to;
+			this.indexed = indexed;
+			this.predicate = predicate;
+			this.object = object;
+		}
+
+		Matches with(Node subject, Node predicate, Node object) {
+			subjectNode = bound(subject) ? subject : null;
+			predicateNode = bound(predicate) ? predicate : null;
+			objectNode = bound(object) ? object : null;
+			return this;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && position < end) {
+				int z = indexed ? objectIndex.get(position) : position;
+				position++;
+				int y = rowOf(objectStart, z, indexed ? -1 : predicateRow);
+				if (!indexed)
+					predicateRow = y;
+				if (predicate >= 0 && predicates.get(y) != predicate)
+					continue;
+				int o = objects.get(z);
+				if (object >= 0 && o != object)
+					continue;
+				int row = rowOf(predicateStart, y, indexed ? -1 : subjectRow);
+				if (!indexed)
+					subjectRow = row;
+				next = Triple.create(subjectNode != null ? subjectNode : getTerm(subjects.get(row)),
+						predicateNode != null ? predicateNode : getTerm(predicates.get(y)), objectNode != null ? objectNode : getTerm(o));
+			}
+			return next != null;
+		}
+
+		@Override
+		public Triple next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Triple triple = next;
+			next = null;
+			return triple;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/*
+	 * The row whose range holds the position: a scan goes on from the row before, a lookup searches
+	 */
+	private static int rowOf(int[] start, int position, int last) {
+		if (last >= 0) {
+			while (start[last + 1] <= position)
+				last++;
+			return last;
+		}
+		int from = 0, to = start.length - 2;
+		while (from < to) {
+			int mid = (from + to + 1) >>> 1;
+			if (start[mid] <= position)
+				from = mid;
+			else
+				to = mid - 1;
+		}
+		return from;
+	}
+
+	/*
+	 * Decodes the terms of a block one after the other. The first term of a block is its length and bytes, every next
+	 * one the length it shares with the term before it, the length of the rest and the rest.
+	 */
+	private class BlockReader {
+		private int offset;
+		private int remaining;
+		private boolean first = true;
+		byte[] term = new byte[64];
+		int length = 0;
+
+		BlockReader(int block) {
+			offset = blocks.get(block);
+			remaining = Math.max(0, Math.min(BLOCK_SIZE, termCount - block * BLOCK_SIZE));
+		}
+
+		boolean next() {
+			if (remaining == 0)
+				return false;
+			remaining--;
+			int shared = 0;
+			if (!first) {
+				shared = readVInt(dictionary, offset);
+				offset += vIntSize(shared);
+			}
+			first = false;
+			int rest = readVInt(dictionary, offset);
+			offset += vIntSize(rest);
+			if (shared + rest > term.length)
+				term = Arrays.copyOf(term, Math.max(term.length * 2, shared + rest));
+			System.arraycopy(dictionary, offset, term, shared, rest);
+			offset += rest;
+			length = shared + rest;
+			return true;
+		}
+	}
+
+	// the rows end after the set bits
+	private static int[] starts(long[] bitmap, int count, int rows) {
+		int[] start = new int[rows + 1];
+		int row = 0;
+		for (int i = 0; i < count; i++)
+			if ((bitmap[i >>> 6] & (1L << (i & 63))) != 0)
+				start[++row] = i + 1;
+		return start;
+	}
+
+	static long[] readBitmap(DataInputStream in) throws IOException {
+		long[] words = new long[in.readInt()];
+		for (int i = 0; i < words.length; i++)
+			words[i] = in.readLong();
+		return words;
+	}
+
+	static void writeBitmap(DataOutputStream out, long[] words) throws IOException {
+		out.writeInt(words.length);
+		for (long word : words)
+			out.writeLong(word);
+	}
+
+	/*
+	 * The term as it is sorted in the dictionary: an IRI as <iri, a blank node as _label, a literal as "datatype lexical
+	 * form, or @language lexical form. The datatype and language have no spaces, so the first space ends them.
+	 */
+	static byte[] encode(Node node) {
+		String term;
+		if (node.isURI())
+			term = "<" + node.getURI();
+		else if (node.isBlank())
+			term = "_" + node.getBlankNodeLabel();
+		else if (node.getLiteralLanguage() != null && node.getLiteralLanguage().length() > 0)
+			term = "@" + node.getLiteralLanguage() + " " + node.getLiteralLexicalForm();
+		else
+			term = "\"" + (node.getLiteralDatatypeURI() == null ? "" : node.getLiteralDatatypeURI()) + " " + node.getLiteralLexicalForm();
+		return term.getBytes(UTF8);
+	}
+
+	static Node decode(String term) {
+		switch (term.charAt(0)) {
+		case '<':
+			return NodeFactory.createURI(term.substring(1));
+		case '_':
+			return NodeFactory.createBlankNode(term.substring(1));
+		case '@': {
+			int space = term.indexOf(' ');
+			return NodeFactory.createLiteral(term.substring(space + 1), term.substring(1, space));
+		}
+		default: {
+			int space = term.indexOf(' ');
+			if (space == 1)
+				return NodeFactory.createLiteral(term.substring(2));
+			return NodeFactory.createLiteral(term.substring(space + 1), TypeMapper.getInstance().getSafeTypeByName(term.substring(1, space)));
+		}
+		}
+	}
+
+	/*
+	 * Compares the bytes as unsigned values, the order of the UTF-8 encoded terms in the dictionary
+	 */
+	static int compare(byte[] a, int offset, int length, byte[] b) {
+		int n = Math.min(length, b.length);
+		for (int i = 0; i < n; i++) {
+			int c = (a[offset + i] & 0xff) - (b[i] & 0xff);
+			if (c != 0)
+				return c;
+		}
+		return length - b.length;
+	}
+
+	static int readVInt(byte[] bytes, int offset) {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = bytes[offset++];
+			value |= (b & 0x7f) << shift;
+			if (b >= 0)
+				return value;
+		}
+	}
+
+	static int vIntSize(int value) {
+		int size = 1;
+		while ((value >>>= 7) != 0)
+			size++;
+		return size;
+	}
+
+	/*
+	 * A sequence of ints of at most 31 bits, each one in as many bits as the largest one needs
+	 */
+	static class LogArray {
+		private final int count;
+		private final int bits;
+		private final long[] words;
+
+		LogArray(int[] values, int count) {
+			int max = 0;
+			for (int i = 0; i < count; i++)
+				max = Math.max(max, values[i]);
+			this.count = count;
+			this.bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(max));
+			this.words = new long[(int) (((long) count * bits + 63) >>> 6)];
+			for (int i = 0; i < count; i++) {
+				long bit = (long) i * bits;
+				int word = (int) (bit >>> 6);
+				int shift = (int) (bit & 63);
+				words[word] |= (long) values[i] << shift;
+				if (shift + bits > 64)
+					words[word + 1] |= (long) values[i] >>> (64 - shift);
+			}
+		}
+
+		private LogArray(int count, int bits, long[] words) {
+			this.count = count;
+			this.bits = bits;
+			this.words = words;
+		}
+
+		int size() {
+			return count;
+		}
+
+		int get(int i) {
+			long bit = (long) i * bits;
+			int word = (int) (bit >>> 6);
+			int shift = (int) (bit & 63);
+			long value = words[word] >>> shift;
+			if (shift + bits > 64)
+				value |= words[word + 1] << (64 - shift);
+			return (int) (value & ((1L << bits) - 1));
+		}
+
+		/*
+		 * The position of the value in the sorted range, -1 when it is not there
+		 */
+		int search(int value, int from, int to) {
+			to--;
+			while (from <= to) {
+				int mid = (from + to) >>> 1;
+				int v = get(mid);
+				if (v < value)
+					from = mid + 1;
+				else if (v > value)
+					to = mid - 1;
+				else
+					return mid;
+			}
+			return -1;
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			out.writeInt(count);
+			out.writeByte(bits);
+			for (long word : words)
+				out.writeLong(word);
+		}
+
+		static LogArray read(DataInputStream in) throws IOException {
+			int count = in.readInt();
+			int bits = in.readByte();
+			long[] words = new long[(int) (((long) count * bits + 63) >>> 6)];
+			for (int i = 0; i < words.length; i++)
+				words[i] = in.readLong();
+			return new LogArray(count, bits, words);
+		}
+	}
+}
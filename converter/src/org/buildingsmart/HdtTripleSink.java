@@ -0,0 +1,204 @@
+package org.buildingsmart;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.graph.Node;
+
+/*
+ * HdtTripleSink keeps the triples of a conversion as ids of their terms and writes them in the compressed, queryable
+ * layout that HdtFile reads: a front coded dictionary of the terms and the sorted triples as bit packed layers with an
+ * object index. The terms are kept once each, so the triples take three ints while the conversion runs, and no Turtle
+ * is written or parsed in between. A triple that is added twice is written once.
+ *
+ * The usage:
+ * HdtTripleSink sink = new HdtTripleSink();
+ * engine.convert(sink);
+ * sink.write(out);
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class HdtTripleSink implements TripleSink {
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final Map<Node, Integer> ids = new HashMap<Node, Integer>();
+	private final List<Node> terms = new ArrayList<Node>();
+	private int count = 0;
+	private int[] triples = new int[3 * INITIAL_CAPACITY];
+
+	@Override
+	public void triple(Node subject, Node predicate, Node object) {
+		if (3 * count == triples.length)
+			triples = Arrays.copyOf(triples, 6 * count);
+		triples[3 * count] = id(subject);
+		triples[3 * count + 1] = id(predicate);
+		triples[3 * count + 2] = id(object);
+		count++;
+	}
+
+	/*
+	 * The number of triples added, with the ones that were added more than once
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	private int id(Node node) {
+		Integer id = ids.get(node);
+		if (id == null) {
+			id = terms.size();
+			ids.put(node, id);
+			terms.add(node);
+		}
+		return id;
+	}
+
+	public void write(OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+		out.writeInt(HdtFile.MAGIC);
+
+		// the dictionary: the ids become the positions of the terms in byte order
+		final byte[][] encoded = new byte[terms.size()][];
+		Integer[] order = new Integer[terms.size()];
+		for (int i = 0; i < encoded.length; i++) {
+			encoded[i] = HdtFile.encode(terms.get(i));
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return HdtFile.compare(encoded[a], 0, encoded[a].length, encoded[b]);
+			}
+		});
+		int[] position = new int[encoded.length];
+		int[] blockOffsets = new int[(encoded.length + HdtFile.BLOCK_SIZE - 1) / HdtFile.BLOCK_SIZE];
+		ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+		int termCount = 0;
+		byte[] previous = null;
+		for (Integer i : order) {
+			byte[] term = encoded[i];
+			// two nodes with the same term, a plain literal and a typed one for example, get one id
+			if (previous != null && HdtFile.compare(previous, 0, previous.length, term) == 0) {
+				position[i] = termCount - 1;
+				continue;
+			}
+			if (termCount % HdtFile.BLOCK_SIZE == 0) {
+				blockOffsets[termCount / HdtFile.BLOCK_SIZE] = dictionary.size();
+				writeVInt(dictionary, term.length);
+				dictionary.write(term, 0, term.length);
+			} else {
+				int shared = 0;
+				int n = Math.min(previous.length, term.length);
+				while (shared < n && previous[shared] == term[shared])
+					shared++;
+				writeVInt(dictionary, shared);
+				writeVInt(dictionary, term.length - shared);
+				dictionary.write(term, shared, term.length - shared);
+			}
+			position[i] = termCount++;
+			previous = term;
+		}
+		order = null;
+		out.writeInt(termCount);
+		new HdtFile.LogArray(blockOffsets, (termCount + HdtFile.BLOCK_SIZE - 1) / HdtFile.BLOCK_SIZE).write(out);
+		out.writeInt(dictionary.size());
+		dictionary.writeTo(out);
+		dictionary = null;
+
+		// the rows: the triples of subject s are triples[rowStart[s]] to triples[rowStart[s + 1]]
+		int[] rowStart = new int[termCount + 1];
+		for (int t = 0; t < count; t++)
+			rowStart[position[triples[3 * t]] + 1]++;
+		for (int s = 0; s < termCount; s++)
+			rowStart[s + 1] += rowStart[s];
+		int[] next = Arrays.copyOf(rowStart, termCount);
+		long[] row = new long[count];
+		for (int t = 0; t < count; t++)
+			row[next[position[triples[3 * t]]]++] = (long) position[triples[3 * t + 1]] << 32 | position[triples[3 * t + 2]];
+		next = null;
+
+		// the layers
+		int[] subjects = new int[termCount];
+		int[] predicates = new int[count];
+		int[] objects = new int[count];
+		long[] predicateEnds = new long[(count + 63) >>> 6];
+		long[] objectEnds = new long[(count + 63) >>> 6];
+		int subjectCount = 0, predicateCount = 0, objectCount = 0;
+		for (int s = 0; s < termCount; s++) {
+			int from = rowStart[s];
+			int to = rowStart[s + 1];
+			if (from == to)
+				continue;
+			Arrays.sort(row, from, to);
+			subjects[subjectCount++] = s;
+			for (int i = from; i < to; i++) {
+				if (i > from && row[i] == row[i - 1])
+					continue;
+				int predicate = (int) (row[i] >>> 32);
+				if (i > from && predicate != (int) (row[i - 1] >>> 32)) {
+					setBit(objectEnds, objectCount - 1);
+					predicates[predicateCount++] = (int) (row[i - 1] >>> 32);
+				}
+				objects[objectCount++] = (int) row[i];
+			}
+			setBit(objectEnds, objectCount - 1);
+			predicates[predicateCount++] = (int) (row[to - 1] >>> 32);
+			setBit(predicateEnds, predicateCount - 1);
+		}
+		row = null;
+		new HdtFile.LogArray(subjects, subjectCount).write(out);
+		new HdtFile.LogArray(predicates, predicateCount).write(out);
+		HdtFile.writeBitmap(out, Arrays.copyOf(predicateEnds, (predicateCount + 63) >>> 6));
+		new HdtFile.LogArray(objects, objectCount).write(out);
+		HdtFile.writeBitmap(out, Arrays.copyOf(objectEnds, (objectCount + 63) >>> 6));
+
+		// the object index: the positions of the object layer by object, a counting sort keeps them in order per object
+		int[] objectRowStart = new int[termCount + 1];
+		for (int z = 0; z < objectCount; z++)
+			objectRowStart[objects[z] + 1]++;
+		for (int o = 0; o < termCount; o++)
+			objectRowStart[o + 1] += objectRowStart[o];
+		int[] index = new int[objectCount];
+		for (int z = 0; z < objectCount; z++)
+			index[objectRowStart[objects[z]]++] = z;
+		new HdtFile.LogArray(index, objectCount).write(out);
+		out.flush();
+	}
+
+	private static void setBit(long[] bitmap, int i) {
+		bitmap[i >>> 6] |= 1L << (i & 63);
+	}
+
+	private static void writeVInt(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7f) != 0) {
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+}
@@ -1,16 +1,17 @@
 package org.buildingsmart;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
@@ -19,6 +20,8 @@ import java.util.Calendar;
 import java.util.Iterator;
 import java.util.List;
 
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.ontology.OntModel;
 import org.apache.jena.ontology.OntModelSpec;
 import org.apache.jena.rdf.model.InfModel;
@@ -27,6 +30,9 @@ import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.reasoner.ReasonerRegistry;
 import org.apache.jena.reasoner.ValidityReport;
 import org.apache.jena.reasoner.ValidityReport.Report;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.util.iterator.ExtendedIterator;
 
 import fi.ni.gui.fx.FxInterface;
 import net.sf.json.JSONObject;
@@ -71,6 +77,7 @@ public class IfcReader {
 	//public Logger logger;
 	public boolean logToFile = false;
 	public BufferedWriter bw;
+	private ConversionOptions options = new ConversionOptions();
 	
 	/**
 	 * @param args
@@ -78,12 +85,15 @@ public class IfcReader {
 	 * @throws IOException 
 	 */
 	public static void main(String[] args) throws IOException {
+		ConversionOptions options = new ConversionOptions();
+		args = options.parseArguments(args);
 		if(args[0].equalsIgnoreCase("LOG") && args[1].equalsIgnoreCase("DIR") && args.length == 3){
 			//do not give too many files to the machine!!!!					
 			List<String> files = showFiles(args[2]);			
 			for(String f : files){
 				if(f.endsWith(".ifc")){
 					IfcReader r = new IfcReader();
+					r.setOptions(options);
 					r.logToFile = true;	
 					r.setupLogger(f);
 					System.out.println("Converting file : " + f + "\r\n");
@@ -101,17 +111,21 @@ public class IfcReader {
 			for(String f : files){
 				if(f.endsWith(".ifc")){
 					IfcReader r = new IfcReader();					
+					r.setOptions(options);
 					System.out.println("Converting file : " + f + "\r\n");
 					if(r.logToFile) r.bw.write("Converting file : " + f + "\r\n");
 					String path = f.substring(0,f.length()-4);		
 					r.convert(path+".ifc", path+".ttl", r.DEFAULT_PATH);
-					r.bw.flush();
-					r.bw.close();
+					if(r.logToFile){
+						r.bw.flush();
+						r.bw.close();
+					}
 				}
 			}
 		}
 		else if(args[0].equalsIgnoreCase("LOG") && args.length == 3){
 			IfcReader r = new IfcReader();
+			r.setOptions(options);
 			r.logToFile = true;
 			r.setupLogger(args[2]);
 			r.convert(args[1], args[2], r.DEFAULT_PATH);
@@ -120,18 +134,20 @@ public class IfcReader {
 		}
 		else if (args.length != 2) {
 			System.out
-					.println("Usage: java IfcReader ifc_filename output_filename \nExample: java IfcReader C:\\sample.ifc c:\\output.ttl (we only convert to TTL)");
+					.println("Usage: java IfcReader [options] ifc_filename output_filename \nExample: java IfcReader C:\\sample.ifc c:\\output.ttl (we only convert to TTL)\n" + ConversionOptions.USAGE);
 			for (int i = 0; i < args.length; i++) {
 				System.out.println("arg[" + i + "] : " + args[i]);
 			}
 		} else {
 			if (args.length == 2 && !args[0].startsWith("-json")) {
 				IfcReader r = new IfcReader();
+				r.setOptions(options);
 				r.convert(args[0], args[1], r.DEFAULT_PATH);
 			} else {
 				if (args[0].equals("-json")) {
 					try {
 						IfcReader r = new IfcReader();
+						r.setOptions(options);
 						FileInputStream fis = new FileInputStream(args[1]);
 						String jsonString = slurp(fis);
 						fis.close();
@@ -141,12 +157,21 @@ public class IfcReader {
 					}
 				} else if (args[0].equals("-jsonString")) {
 					IfcReader r = new IfcReader();
+					r.setOptions(options);
 					r.convert(args[1]);
 				}
 			}
 		}
 	}
 	
+	public ConversionOptions getOptions() {
+		return options;
+	}
+
+	public void setOptions(ConversionOptions options) {
+		this.options = options;
+	}
+
 	public void setupLogger(String path){	
 		String outputFile = path.substring(0,path.length()-4) + ".log";
 
@@ -166,6 +191,7 @@ public class IfcReader {
 		JSONObject obj = JSONObject.fromObject(jsonConfig);
 		String ifc_file = obj.getString("ifc_file");
 		String output_file = obj.getString("output_file");
+		options.readJSON(obj);
 		convert(ifc_file, output_file, DEFAULT_PATH);
 	}
 
@@ -252,6 +278,7 @@ public class IfcReader {
 			
 			IfcConvertor conv = new IfcConvertor(om, expressModel, listModel, er, new FileInputStream(ifc_file), baseURI, exp);
 			conv.setIfcReader(this);
+			conv.setOptions(options);
 			model = conv.parseModel();
 		} catch (FileNotFoundException e1) {
 			e1.printStackTrace();
@@ -334,6 +361,7 @@ public class IfcReader {
 			
 			IfcConvertor conv = new IfcConvertor(om, expressModel, listModel, er, new FileInputStream(ifc_file), baseURI, exp);
 			conv.setIfcReader(this);
+			conv.setOptions(options);
 			model = conv.parseModel();
 		} catch (FileNotFoundException e1) {
 			e1.printStackTrace();
@@ -398,51 +426,129 @@ public class IfcReader {
 	}
 
 	private void writeTTLRDFFiles(Model model, String output_file) throws IOException {
+		// only the number of triples was asked for, no file is created
+		if (options.isCountOnly())
+			return;
 
-		System.out.println("output_file before: " + output_file);
-		if(logToFile) bw.write("output_file before: " + output_file+"\r\n");
-		
-		if (!output_file.endsWith(".ttl")) {
-			//output_file.replaceAll(".", "");
-			output_file += ".ttl";
+		if (options.getFormats() != null) {
+			writeFormatFiles(model, output_file, options.getFormats());
+			return;
+		}
+		if (options.isHdt()) {
+			writeHdtFile(model, new File(outputFileName(output_file, options)));
+			return;
+		}
+		if (options.isThrift()) {
+			// only the binary file, it is written and read back much faster than TTL and RDF/XML
+			writeThriftFile(model, new File(outputFileName(output_file, options)));
+			return;
 		}
 
-		System.out.println("output_file after: " + output_file);
-		if(logToFile) bw.write("output_file after: " + output_file+"\r\n");
-		
-		String output_file_rdf = output_file.substring(0,
-				output_file.length() - 4) + ".rdf";
-		
-		System.out.println("output_file_rdf: " + output_file_rdf);
-		if(logToFile) bw.write("output_file_rdf: " + output_file_rdf+"\r\n");
-		
+		// one walk through the model writes both files, each on a thread of its own
+		writeFormatFiles(model, output_file, "ttl,rdf");
+	}
+	/*
+	 * The file a binary format is written to: the .ttl of the output file is replaced by the extension of the format, as
+	 * readModel tells the formats apart by it. Used by the stream conversion as well.
+	 */
+	static String outputFileName(String output_file, ConversionOptions options) {
+		if (options.isHdt()) {
+			if (output_file.endsWith(".ttl"))
+				output_file = output_file.substring(0, output_file.length() - 4);
+			if (!output_file.endsWith(".hdt"))
+				output_file += ".hdt";
+		} else if (options.isThrift()) {
+			if (output_file.endsWith(".ttl"))
+				output_file = output_file.substring(0, output_file.length() - 4);
+			if (!output_file.endsWith(".trdf") && !output_file.endsWith(".rt"))
+				output_file += ".trdf";
+		}
+		return output_file;
+	}
+	private void writeFormatFiles(Model model, String output_file, String formats) throws IOException {
 		try {
-			OutputStreamWriter char_output = new OutputStreamWriter(
-					new FileOutputStream(output_file), Charset.forName("UTF-8")
-							.newEncoder());
-			BufferedWriter out = new BufferedWriter(char_output);
-			model.write(out, "TTL");
+			MultiFormatWriter writer = new MultiFormatWriter(output_file, formats, model.getNsPrefixMap(), options.isGzip() ? options.getThreads() : 0);
+			ExtendedIterator<Triple> triples = model.getGraph().find(Node.ANY, Node.ANY, Node.ANY);
+			try {
+				while (triples.hasNext()) {
+					Triple triple = triples.next();
+					writer.triple(triple.getSubject(), triple.getPredicate(), triple.getObject());
+				}
+			} finally {
+				writer.close();
+			}
+			for (String file : writer.getFiles()) {
+				System.out.println("output_file: " + file);
+				if(logToFile) bw.write("output_file: " + file+"\r\n");
+			}
 		} catch (IOException e) {
 			System.err
-					.println("Something went wrong while writing the TTL file");
-			if(logToFile) bw.write("Something went wrong while writing the TTL file"+"\r\n");
+					.println("Something went wrong while writing the " + formats + " files");
+			if(logToFile) bw.write("Something went wrong while writing the " + formats + " files"+"\r\n");
 			System.exit(1);
 			e.printStackTrace();
 		}
+	}
+	private void writeHdtFile(Model model, File output_file) throws IOException {
+		String file = ParallelGzipOutputStream.fileName(output_file.getAbsolutePath(), options.isGzip());
+		System.out.println("output_file_hdt: " + file);
+		if(logToFile) bw.write("output_file_hdt: " + file+"\r\n");
+		HdtTripleSink sink = new HdtTripleSink();
+		ExtendedIterator<Triple> triples = model.getGraph().find(Node.ANY, Node.ANY, Node.ANY);
+		while (triples.hasNext()) {
+			Triple triple = triples.next();
+			sink.triple(triple.getSubject(), triple.getPredicate(), triple.getObject());
+		}
 		try {
-			OutputStreamWriter char_output = new OutputStreamWriter(
-					new FileOutputStream(output_file_rdf), Charset.forName(
-							"UTF-8").newEncoder());
-			BufferedWriter out = new BufferedWriter(char_output);
-			model.write(out, "RDF/XML");
+			OutputStream out = ParallelGzipOutputStream.open(file, options.isGzip(), options.getThreads());
+			try {
+				sink.write(out);
+			} finally {
+				out.close();
+			}
 		} catch (IOException e) {
 			System.err
-					.println("Something went wrong while writing the RDF file");
-			if(logToFile) bw.write("Something went wrong while writing the TTL file"+"\r\n");
+					.println("Something went wrong while writing the HDT file");
+			if(logToFile) bw.write("Something went wrong while writing the HDT file"+"\r\n");
 			System.exit(1);
 			e.printStackTrace();
 		}
 	}
+	private void writeThriftFile(Model model, File output_file) throws IOException {
+		String file = ParallelGzipOutputStream.fileName(output_file.getAbsolutePath(), options.isGzip());
+		System.out.println("output_file_thrift: " + file);
+		if(logToFile) bw.write("output_file_thrift: " + file+"\r\n");
+		try {
+			OutputStream out = new BufferedOutputStream(ParallelGzipOutputStream.open(file, options.isGzip(), options.getThreads()));
+			try {
+				RDFDataMgr.write(out, model, RDFFormat.RDF_THRIFT);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			System.err
+					.println("Something went wrong while writing the RDF Thrift file");
+			if(logToFile) bw.write("Something went wrong while writing the RDF Thrift file"+"\r\n");
+			System.exit(1);
+			e.printStackTrace();
+		}
+	}
+
+	/*
+	 * Reads a converted model back, RDF Thrift (.trdf or .rt) and HDT (.hdt) as well as TTL and RDF/XML, by the extension
+	 * of the file, also when it is compressed (.gz). An HDT file can also be searched without a Model, see HdtFile.
+	 */
+	public static Model readModel(String file) throws IOException {
+		Model model = ModelFactory.createDefaultModel();
+		if (file.endsWith(".hdt") || file.endsWith(".hdt.gz")) {
+			Iterator<Triple> triples = HdtFile.read(new File(file)).find(null, null, null);
+			while (triples.hasNext())
+				model.getGraph().add(triples.next());
+			return model;
+		}
+		RDFDataMgr.read(model, file);
+		return model;
+	}
 	
 	public static List<String> showFiles(String dir) {
 		List<String> goodFiles = new ArrayList<String>();
@@ -511,6 +617,7 @@ public class IfcReader {
 			
 			IfcConvertor conv = new IfcConvertor(om, expressModel, listModel, er, new FileInputStream(ifc_file), baseURI, exp);
 			conv.setIfcReader(this);
+			conv.setOptions(options);
 			model = conv.parseModel();
 		} catch (FileNotFoundException e1) {
 			fx_gui.handle_notification(e1.getMessage());
@@ -600,6 +707,7 @@ public class IfcReader {
 			
 			IfcConvertor conv = new IfcConvertor(om, expressModel, listModel, er, new FileInputStream(ifc_file), baseURI, exp);
 			conv.setIfcReader(this);
+			conv.setOptions(options);
 			model = conv.parseModel();
 		} catch (FileNotFoundException e1) {
 			fx_gui.handle_notification(e1.getMessage());
@@ -640,16 +748,33 @@ public class IfcReader {
 	}
 
 	private void writeTTLRDFFiles(Model model, File output_file) throws IOException {
+		// only the number of triples was asked for, no file is created
+		if (options.isCountOnly())
+			return;
+
+		if (options.getFormats() != null) {
+			writeFormatFiles(model, output_file.getPath(), options.getFormats());
+			return;
+		}
+		if (options.isHdt()) {
+			writeHdtFile(model, new File(outputFileName(output_file.getPath(), options)));
+			return;
+		}
+		if (options.isThrift()) {
+			writeThriftFile(model, new File(outputFileName(output_file.getPath(), options)));
+			return;
+		}
 
 		System.out.println("output_file before: " + output_file.getAbsolutePath());
 		if(logToFile) bw.write("output_file before: " + output_file.getAbsolutePath()+"\r\n");
 		
-		System.out.println("output_file after: " + output_file.getAbsolutePath());
-		if(logToFile) bw.write("output_file after: " + output_file.getAbsolutePath()+"\r\n");
+		String file = ParallelGzipOutputStream.fileName(output_file.getAbsolutePath(), options.isGzip());
+		System.out.println("output_file after: " + file);
+		if(logToFile) bw.write("output_file after: " + file+"\r\n");
 		
 		try {
 			OutputStreamWriter char_output = new OutputStreamWriter(
-					new FileOutputStream(output_file), Charset.forName("UTF-8")
+					ParallelGzipOutputStream.open(file, options.isGzip(), options.getThreads()), Charset.forName("UTF-8")
 							.newEncoder());
 			BufferedWriter out = new BufferedWriter(char_output);
 			model.write(out, "TTL");
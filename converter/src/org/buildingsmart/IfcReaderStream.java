@@ -6,12 +6,12 @@ import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -22,7 +22,9 @@ import net.sf.json.JSONObject;
 
 import org.apache.jena.ontology.OntModel;
 import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.tdb.TDBFactory;
 import org.buildingsmart.vo.EntityVO;
 import org.buildingsmart.vo.TypeVO;
 
@@ -72,18 +74,22 @@ public class IfcReaderStream {
 	//public Logger logger;
 	public boolean logToFile = false;
 	public BufferedWriter bw;
+	private ConversionOptions options = new ConversionOptions();
 
 	/**
 	 * @param args
 	 *            inputFilePath outputFilePath
 	 */
 	public static void main(String[] args) throws IOException {
+		ConversionOptions options = new ConversionOptions();
+		args = options.parseArguments(args);
 		if(args[0].equalsIgnoreCase("LOG") && args[1].equalsIgnoreCase("DIR") && args.length == 3){
 			//do not give too many files to the machine!!!!					
 			List<String> files = showFiles(args[2]);			
 			for(String f : files){
 				if(f.endsWith(".ifc")){
 					IfcReaderStream r = new IfcReaderStream();
+					r.setOptions(options);
 					r.logToFile = true;	
 					r.setupLogger(f);
 					System.out.println("Converting file : " + f + "\r\n");
@@ -101,6 +107,7 @@ public class IfcReaderStream {
 			for(String f : files){
 				if(f.endsWith(".ifc")){
 					IfcReaderStream r = new IfcReaderStream();					
+					r.setOptions(options);
 					System.out.println("Converting file : " + f + "\r\n");
 					String path = f.substring(0,f.length()-4);		
 					r.convert(path+".ifc", path+".ttl", r.DEFAULT_PATH);
@@ -109,26 +116,38 @@ public class IfcReaderStream {
 		}
 		else if(args[0].equalsIgnoreCase("LOG") && args.length == 3){
 			IfcReaderStream r = new IfcReaderStream();
+			r.setOptions(options);
 			r.logToFile = true;
 			r.setupLogger(args[2]);
 			r.convert(args[1], args[2], r.DEFAULT_PATH);
 			r.bw.flush();
 			r.bw.close();
 		}
+		else if (options.getTdb() != null && args.length > 0 && !args[0].startsWith("-json")) {
+			// every argument is an IFC file, each is loaded into its own named graph of the dataset
+			for (String f : args) {
+				IfcReaderStream r = new IfcReaderStream();
+				r.setOptions(options);
+				System.out.println("Converting file : " + f + "\r\n");
+				r.convert(f, null, r.DEFAULT_PATH);
+			}
+		}
 		else if (args.length != 2) {
 			System.out
-					.println("Usage: java IfcReader ifc_filename output_filename \nExample: java IfcReaderStream C:\\sample.ifc c:\\output.ttl (we only convert to TTL)");
+					.println("Usage: java IfcReader [options] ifc_filename output_filename \nExample: java IfcReaderStream C:\\sample.ifc c:\\output.ttl (we only convert to TTL)\n" + ConversionOptions.USAGE);
 			for (int i = 0; i < args.length; i++) {
 				System.out.println("arg[" + i + "] : " + args[i]);
 			}
 		} else {
 			if (args.length == 2 && !args[0].startsWith("-json")) {
 				IfcReaderStream r = new IfcReaderStream();
+				r.setOptions(options);
 				r.convert(args[0], args[1], r.DEFAULT_PATH);
 			} else {
 				if (args[0].equals("-json")) {
 					try {
 						IfcReaderStream r = new IfcReaderStream();
+						r.setOptions(options);
 						FileInputStream fis = new FileInputStream(args[1]);
 						String jsonString = slurp(fis);
 						fis.close();
@@ -138,6 +157,7 @@ public class IfcReaderStream {
 					}
 				} else if (args[0].equals("-jsonString")) {
 					IfcReaderStream r = new IfcReaderStream();
+					r.setOptions(options);
 					r.convert(args[1]);
 				}
 			}
@@ -159,6 +179,14 @@ public class IfcReaderStream {
 	    return goodFiles;
 	}
 	
+	public ConversionOptions getOptions() {
+		return options;
+	}
+
+	public void setOptions(ConversionOptions options) {
+		this.options = options;
+	}
+
 	public void setupLogger(String path){	
 		String outputFile = path.substring(0,path.length()-4) + ".log";
 
@@ -178,7 +206,9 @@ public class IfcReaderStream {
 		JSONObject obj = JSONObject.fromObject(jsonConfig);
 
 		String ifc_file = obj.getString("ifc_file");
-		String output_file = obj.getString("output_file");
+		options.readJSON(obj);
+		// a conversion into a TDB dataset writes no output file
+		String output_file = options.getTdb() != null ? obj.optString("output_file", null) : obj.getString("output_file");
 
 		convert(ifc_file, output_file, DEFAULT_PATH);
 	}
@@ -284,10 +314,32 @@ public class IfcReaderStream {
 			
 			IfcConvertorStream conv = new IfcConvertorStream(om, expressModel, listModel, new FileInputStream(ifc_file), baseURI, ent, typ, ontURI);
 			conv.setIfcReader(this);
-			FileOutputStream out=new FileOutputStream(output_file);
-			System.out.println("started parsing stream");
-			conv.parseModel2Stream(out);		
-			System.out.println("finished!!");
+			conv.setOptions(options);
+			if (options.getTdb() != null) {
+				// the output file is not written, the graph of the model is named by the IFC file
+				Dataset dataset = TDBFactory.createDataset(options.getTdb());
+				System.out.println("started parsing stream");
+				conv.parseModel2Dataset(dataset, new File(ifc_file).getAbsoluteFile().toURI().toString());
+				System.out.println("finished!!");
+			} else if (options.isCountOnly()) {
+				// the output file is not created
+				System.out.println("started parsing stream");
+				conv.countModel();
+				System.out.println("finished!!");
+			} else if (options.getFormats() != null) {
+				System.out.println("started parsing stream");
+				conv.parseModel2Files(output_file);
+				System.out.println("finished!!");
+			} else {
+				OutputStream out = ParallelGzipOutputStream.open(ParallelGzipOutputStream.fileName(IfcReader.outputFileName(output_file, options), options.isGzip()), options.isGzip(), options.getThreads());
+				System.out.println("started parsing stream");
+				try {
+					conv.parseModel2Stream(out);
+				} finally {
+					out.close();
+				}
+				System.out.println("finished!!");
+			}
 		} catch (FileNotFoundException e1) {
 			e1.printStackTrace();
 		} finally {
@@ -349,7 +401,7 @@ public class IfcReaderStream {
 		
 		InputStream in = null;
 		InputStream expin = null;
-		FileOutputStream out=null;
+		OutputStream out=null;
 		try {			
 			om = ModelFactory.createOntologyModel(OntModelSpec.OWL_DL_MEM);
 			in = IfcReader.class.getResourceAsStream("/" + exp + ".ttl");
@@ -393,14 +445,20 @@ public class IfcReaderStream {
 			
 			IfcConvertorStream conv = new IfcConvertorStream(om, expressModel, listModel, new FileInputStream(ifc_file), baseURI, ent, typ, ontURI);
 			conv.setIfcReader(this);
-			out=new FileOutputStream(output_file);
-			conv.parseModel2Stream(out);		
+			conv.setOptions(options);
+			if (options.isCountOnly())
+				conv.countModel();
+			else {
+				out=ParallelGzipOutputStream.open(ParallelGzipOutputStream.fileName(IfcReader.outputFileName(output_file, options), options.isGzip()), options.isGzip(), options.getThreads());
+				conv.parseModel2Stream(out);
+			}
 			fx_gui.handle_notification(ifc_file+ " converted to RDF.");
 		} catch (FileNotFoundException e1) {
 			fx_gui.handle_notification(e1.getMessage());
 		} finally {
 			try {
-				out.close();
+				if (out != null)
+					out.close();
 				in.close();
 			} catch (Exception e1) {
 				fx_gui.handle_notification(e1.getMessage());
@@ -435,7 +493,7 @@ public class IfcReaderStream {
 		OntModel om = null;
 		
 		InputStream in = null;
-		FileOutputStream out=null;
+		OutputStream out=null;
 		try {			
 			om = ModelFactory.createOntologyModel(OntModelSpec.OWL_DL_MEM);
 			in = IfcReader.class.getResourceAsStream("/" + exp + ".ttl");
@@ -476,14 +534,20 @@ public class IfcReaderStream {
 			String ontURI = "http://ifcowl.openbimstandards.org/" + exp;
 			IfcConvertorStream conv = new IfcConvertorStream(om, expressModel, listModel, new FileInputStream(ifc_file), baseURI, ent, typ, ontURI);
 			conv.setIfcReader(this);
-			out=new FileOutputStream(output_file);
-			conv.parseModel2Stream(out);
+			conv.setOptions(options);
+			if (options.isCountOnly())
+				conv.countModel();
+			else {
+				out=ParallelGzipOutputStream.open(ParallelGzipOutputStream.fileName(IfcReader.outputFileName(output_file.getPath(), options), options.isGzip()), options.isGzip(), options.getThreads());
+				conv.parseModel2Stream(out);
+			}
 			fx_gui.handle_notification(ifc_file+ " converted to RDF.");
 		} catch (FileNotFoundException e1) {
 			fx_gui.handle_notification(e1.getMessage());
 		} finally {
 			try {
-				out.close();
+				if (out != null)
+					out.close();
 				in.close();
 			} catch (Exception e1) {
 				fx_gui.handle_notification(e1.getMessage());
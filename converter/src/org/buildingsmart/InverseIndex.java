@@ -0,0 +1,182 @@
+package org.buildingsmart;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.graph.Node;
+
+/*
+ * InverseIndex collects the references of the conversion that have an inverse attribute, such as the RelatedObjects of an
+ * IfcRelDefinesByProperties with the IsDefinedBy of its objects, and gives them back grouped by the referenced entity, so
+ * that the inverse triples of an entity are written together after the instances.
+ * The references are kept as edges in primitive arrays. visit() sorts them once with a radix sort by the referenced line,
+ * the source line and the inverse property, so a target with many references costs no more than others.
+ * Only the inverses with one of the given names are collected, "all" collects every inverse.
+ *
+ * The usage:
+ * InverseIndex inverses = new InverseIndex("IsDefinedBy,ContainedInStructure");
+ * if (inverses.selects(attribute.inverseName))
+ *     inverses.add(target, targetType, inverseProperty, source, sourceType);
+ * inverses.visit(visitor);
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class InverseIndex {
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/*
+	 * Gets the inverse references, grouped by the target
+	 */
+	public interface Visitor {
+		void inverse(long target, int targetType, Node property, long source, int sourceType) throws IOException;
+	}
+
+	// null for all inverses
+	private final Set<String> names;
+
+	// the edges: the referenced line and its SymbolTable type, the inverse property, and the referencing line and its type
+	private int count = 0;
+	private long[] targets = new long[INITIAL_CAPACITY];
+	private int[] targetTypes = new int[INITIAL_CAPACITY];
+	private int[] properties = new int[INITIAL_CAPACITY];
+	private long[] sources = new long[INITIAL_CAPACITY];
+	private int[] sourceTypes = new int[INITIAL_CAPACITY];
+
+	private final Map<Node, Integer> propertyIds = new IdentityHashMap<Node, Integer>();
+	private final List<Node> propertyNodes = new ArrayList<Node>();
+
+	public InverseIndex(String names) {
+		if (names == null || names.trim().equalsIgnoreCase("all")) {
+			this.names = null;
+			return;
+		}
+		this.names = new HashSet<String>();
+		for (String name : names.split(","))
+			if (name.trim().length() > 0)
+				this.names.add(name.trim().toUpperCase());
+	}
+
+	/*
+	 * Whether the inverse attribute with the given name, IsDefinedBy for example, is collected
+	 */
+	public boolean selects(String inverseName) {
+		return inverseName != null && (names == null || names.contains(inverseName.toUpperCase()));
+	}
+
+	/*
+	 * Adds the reference from the source line to the target line, property is the inverse property of the reference. The
+	 * writers of a parallel conversion add at the same time.
+	 */
+	public synchronized void add(long target, int targetType, Node property, long source, int sourceType) {
+		if (count == targets.length) {
+			targets = Arrays.copyOf(targets, count * 2);
+			targetTypes = Arrays.copyOf(targetTypes, count * 2);
+			properties = Arrays.copyOf(properties, count * 2);
+			sources = Arrays.copyOf(sources, count * 2);
+			sourceTypes = Arrays.copyOf(sourceTypes, count * 2);
+		}
+		Integer id = propertyIds.get(property);
+		if (id == null) {
+			id = propertyNodes.size();
+			propertyIds.put(property, id);
+			propertyNodes.add(property);
+		}
+		targets[count] = target;
+		targetTypes[count] = targetType;
+		properties[count] = id;
+		sources[count] = source;
+		sourceTypes[count] = sourceType;
+		count++;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/*
+	 * Visits the edges by target line, and the edges of a target by source line and property, so the order does not depend
+	 * on the order in which they were added
+	 */
+	public void visit(Visitor visitor) throws IOException {
+		// the rank of every property by its IRI
+		List<Node> byIRI = new ArrayList<Node>(propertyNodes);
+		Collections.sort(byIRI, new Comparator<Node>() {
+			@Override
+			public int compare(Node a, Node b) {
+				return a.getURI().compareTo(b.getURI());
+			}
+		});
+		Map<Node, Integer> ranks = new IdentityHashMap<Node, Integer>();
+		for (int i = 0; i < byIRI.size(); i++)
+			ranks.put(byIRI.get(i), i);
+		long[] propertyRanks = new long[count];
+		for (int i = 0; i < count; i++)
+			propertyRanks[i] = ranks.get(propertyNodes.get(properties[i]));
+
+		// a stable sort by the least significant key first leaves the edges by target, source and property
+		int[] edges = new int[count];
+		for (int i = 0; i < count; i++)
+			edges[i] = i;
+		int[][] arrays = { edges, new int[count] };
+		sortBy(arrays, propertyRanks);
+		sortBy(arrays, sources);
+		sortBy(arrays, targets);
+		edges = arrays[0];
+
+		for (int i = 0; i < count; i++) {
+			int edge = edges[i];
+			visitor.inverse(targets[edge], targetTypes[edge], propertyNodes.get(properties[edge]), sources[edge], sourceTypes[edge]);
+		}
+	}
+
+	/*
+	 * Sorts the edges in arrays[0] stably by key[edge] with a radix sort of 16 bits a pass, arrays[1] is the buffer, they
+	 * are swapped after each pass. The keys are line numbers or ranks and not negative.
+	 */
+	private static void sortBy(int[][] arrays, long[] key) {
+		int[] edges = arrays[0];
+		int[] buffer = arrays[1];
+		long max = 0;
+		for (int i = 0; i < edges.length; i++)
+			max = Math.max(max, key[edges[i]]);
+		int[] start = new int[(1 << 16) + 1];
+		for (int shift = 0; shift < 64 && (max >>> shift) != 0; shift += 16) {
+			Arrays.fill(start, 0);
+			for (int i = 0; i < edges.length; i++)
+				start[(int) (key[edges[i]] >>> shift & 0xFFFF) + 1]++;
+			for (int d = 0; d < 1 << 16; d++)
+				start[d + 1] += start[d];
+			for (int i = 0; i < edges.length; i++)
+				buffer[start[(int) (key[edges[i]] >>> shift & 0xFFFF)]++] = edges[i];
+			int[] sorted = buffer;
+			buffer = edges;
+			edges = sorted;
+		}
+		arrays[0] = edges;
+		arrays[1] = buffer;
+	}
+}
@@ -0,0 +1,161 @@
+package org.buildingsmart;
+
+import java.util.Arrays;
+
+/*
+ * LineTable maps a STEP line number (#id) to a long value that is 0 or more, in primitive arrays, without boxing the key or
+ * the value. Like EntityTable and EntityIndex it starts as an array indexed by the id and switches to open addressing when
+ * the ids are sparse or negative. The indexes keep the line of a parent in it, or the position of a record in a list.
+ *
+ * The usage:
+ * LineTable parents = new LineTable();
+ * parents.put(child, parent);
+ * long parent = parents.get(child);
+ * for (long line : parents.lines()) ...
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class LineTable {
+	private static final int INITIAL_CAPACITY = 1024;
+	// the dense array may be at most this many times larger than the number of lines
+	private static final int MAX_SPARSENESS = 4;
+	private static final int MAX_DENSE_CAPACITY = Integer.MAX_VALUE - 8;
+
+	private int size = 0;
+	private boolean dense = true;
+
+	// value + 1 per slot, 0 marks an empty slot
+	private long[] values = new long[INITIAL_CAPACITY];
+	// hashed mode only: the line number of each slot
+	private long[] keys;
+	private int mask;
+
+	public void put(long id, long value) {
+		if (value < 0)
+			throw new IllegalArgumentException("negative value " + value + " for #" + id);
+		int slot = slotFor(id);
+		if (values[slot] == 0)
+			size++;
+		values[slot] = value + 1;
+	}
+
+	/*
+	 * The value of the line, or -1 when the table does not have it
+	 */
+	public long get(long id) {
+		int slot = find(id);
+		return slot < 0 ? -1 : values[slot] - 1;
+	}
+
+	public boolean containsKey(long id) {
+		return find(id) >= 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * The line numbers in the table, in ascending order
+	 */
+	public long[] lines() {
+		long[] result = new long[size];
+		int count = 0;
+		for (int slot = 0; slot < values.length; slot++)
+			if (values[slot] != 0)
+				result[count++] = dense ? slot : keys[slot];
+		if (!dense)
+			Arrays.sort(result);
+		return result;
+	}
+
+	private int find(long id) {
+		if (dense)
+			return (id >= 0 && id < values.length && values[(int) id] != 0) ? (int) id : -1;
+		int slot = hash(id) & mask;
+		while (values[slot] != 0) {
+			if (keys[slot] == id)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	// the slot of id, made room for when the line is new
+	private int slotFor(long id) {
+		if (dense) {
+			if (id >= 0 && id < values.length)
+				return (int) id;
+			if (id >= 0 && id < MAX_DENSE_CAPACITY && id < (long) MAX_SPARSENESS * (size + 1) + INITIAL_CAPACITY) {
+				long capacity = values.length;
+				while (capacity <= id)
+					capacity *= 2;
+				long[] larger = new long[(int) Math.min(capacity, MAX_DENSE_CAPACITY)];
+				System.arraycopy(values, 0, larger, 0, values.length);
+				values = larger;
+				return (int) id;
+			}
+			toHashed();
+		}
+		if ((size + 1) * 2 > values.length)
+			rehash(values.length * 2);
+		int slot = hash(id) & mask;
+		while (values[slot] != 0 && keys[slot] != id)
+			slot = (slot + 1) & mask;
+		keys[slot] = id;
+		return slot;
+	}
+
+	private void toHashed() {
+		long[] oldValues = values;
+		dense = false;
+		allocateHashed(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, size) * 4)));
+		for (int id = 0; id < oldValues.length; id++)
+			if (oldValues[id] != 0)
+				insertHashed(id, oldValues[id]);
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		allocateHashed(capacity);
+		for (int n = 0; n < oldValues.length; n++)
+			if (oldValues[n] != 0)
+				insertHashed(oldKeys[n], oldValues[n]);
+	}
+
+	private void allocateHashed(int capacity) {
+		keys = new long[capacity];
+		values = new long[capacity];
+		mask = capacity - 1;
+	}
+
+	private void insertHashed(long id, long value) {
+		int slot = hash(id) & mask;
+		while (values[slot] != 0)
+			slot = (slot + 1) & mask;
+		keys[slot] = id;
+		values[slot] = value;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -0,0 +1,186 @@
+package org.buildingsmart;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+
+/*
+ * MultiFormatWriter writes the triples of one conversion, or of one walk through a Model, into a file for each of the
+ * given formats at the same time, each format on a writer thread of its own, see ConcurrentFanOutSink. The files are
+ * named by the output file with the extension of the format:
+ * ttl   Turtle, in blocks of the triples of a subject
+ * nt    N-Triples
+ * rdf   RDF/XML, see RdfXmlTripleSink
+ * trdf  RDF Thrift
+ * hdt   the compressed, queryable file of HdtTripleSink
+ *
+ * The usage:
+ * MultiFormatWriter writer = new MultiFormatWriter("model.ttl", "ttl,rdf", prefixes);
+ * engine.convert(writer);
+ * writer.close();
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class MultiFormatWriter implements TripleSink {
+	public static final String FORMATS = "ttl,nt,rdf,trdf,hdt";
+
+	private final List<String> files = new ArrayList<String>();
+	private final ConcurrentFanOutSink fanOut;
+
+	/*
+	 * Opens a file for every format, the prefixes are prefix -> namespace
+	 */
+	public MultiFormatWriter(String output, String formats, Map<String, String> prefixes) throws IOException {
+		this(output, formats, prefixes, 0);
+	}
+
+	/*
+	 * As above, with gzipThreads > 0 the files are compressed on that many threads each and get .gz added to their names,
+	 * see ParallelGzipOutputStream
+	 */
+	public MultiFormatWriter(String output, String formats, Map<String, String> prefixes, int gzipThreads) throws IOException {
+		String base = baseName(output);
+		Set<String> names = new LinkedHashSet<String>();
+		for (String format : formats.split(","))
+			if (format.trim().length() > 0)
+				names.add(format.trim().toLowerCase());
+		for (String format : names)
+			if (!Arrays.asList(FORMATS.split(",")).contains(format))
+				throw new IOException("unknown output format " + format + ", the formats are " + FORMATS);
+		List<TripleSink> sinks = new ArrayList<TripleSink>();
+		try {
+			for (String format : names) {
+				String file = ParallelGzipOutputStream.fileName(base + "." + format, gzipThreads > 0);
+				sinks.add(open(format, ParallelGzipOutputStream.open(file, gzipThreads > 0, gzipThreads), prefixes));
+				files.add(file);
+			}
+		} catch (IOException e) {
+			for (TripleSink sink : sinks)
+				((Closeable) sink).close();
+			throw e;
+		}
+		fanOut = new ConcurrentFanOutSink(sinks.toArray(new TripleSink[sinks.size()]));
+	}
+
+	@Override
+	public void triple(Node subject, Node predicate, Node object) {
+		fanOut.triple(subject, predicate, object);
+	}
+
+	/*
+	 * Waits until every format is written and closes the files
+	 */
+	public void close() throws IOException {
+		fanOut.close();
+	}
+
+	public List<String> getFiles() {
+		return files;
+	}
+
+	/*
+	 * The output file without the extension of one of the formats
+	 */
+	public static String baseName(String output) {
+		if (output.endsWith(".gz"))
+			output = output.substring(0, output.length() - 3);
+		int dot = output.lastIndexOf('.');
+		if (dot > Math.max(output.lastIndexOf('/'), output.lastIndexOf('\\'))) {
+			String extension = output.substring(dot + 1).toLowerCase();
+			if (Arrays.asList(FORMATS.split(",")).contains(extension) || extension.equals("rt"))
+				return output.substring(0, dot);
+		}
+		return output;
+	}
+
+	private static TripleSink open(String format, OutputStream out, Map<String, String> prefixes) throws IOException {
+		if (format.equals("ttl"))
+			return new StreamSink(out, RDFFormat.TURTLE_BLOCKS, prefixes);
+		if (format.equals("nt"))
+			return new StreamSink(out, RDFFormat.NTRIPLES, prefixes);
+		if (format.equals("trdf"))
+			return new StreamSink(new BufferedOutputStream(out, 1 << 16), RDFFormat.RDF_THRIFT, prefixes);
+		if (format.equals("rdf"))
+			return new RdfXmlTripleSink(new BufferedWriter(new OutputStreamWriter(out, Charset.forName("UTF-8")), 1 << 16), prefixes);
+		return new HdtSink(out);
+	}
+
+	/*
+	 * A StreamRDF writer of Jena that is finished and closed on its writer thread
+	 */
+	private static class StreamSink implements TripleSink, Closeable {
+		private final OutputStream out;
+		private final StreamRDF stream;
+
+		StreamSink(OutputStream out, RDFFormat format, Map<String, String> prefixes) {
+			this.out = out;
+			this.stream = StreamRDFWriter.getWriterStream(out, format);
+			for (Map.Entry<String, String> prefix : prefixes.entrySet())
+				stream.prefix(prefix.getKey(), prefix.getValue());
+			stream.start();
+		}
+
+		@Override
+		public void triple(Node subject, Node predicate, Node object) {
+			stream.triple(new Triple(subject, predicate, object));
+		}
+
+		@Override
+		public void close() throws IOException {
+			stream.finish();
+			out.close();
+		}
+	}
+
+	/*
+	 * An HdtTripleSink that writes its file when it is closed, on its writer thread
+	 */
+	private static class HdtSink extends HdtTripleSink implements Closeable {
+		private final OutputStream out;
+
+		HdtSink(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				write(out);
+			} finally {
+				out.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,301 @@
+package org.buildingsmart;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.bimserver.plugins.serializers.ProgressReporter;
+import org.buildingsmart.vo.IFCVO;
+
+/*
+ * ParallelEmission creates the triples of the entities on several threads. The entities are split into blocks of a fixed
+ * size, each block is written by a worker into its own BlockEmitter, and the blocks are merged one by one into the
+ * TripleEmitter of the conversion on the calling thread.
+ * A worker cannot number the value and list resources, the numbers depend on all the blocks before. It gives them
+ * placeholder Nodes, and shares equal values only within the block. The merge numbers the placeholders in the order they
+ * were created, and drops the triples of a value that an earlier block already created, so a block gets the numbers that a
+ * serial run would give it. The content addressed values are kept in a bounded cache that drops the least recently used,
+ * so the block records every use of a value, and the merge replays the uses in order: the cache of the conversion then
+ * drops the same values as in a serial run, and the triples of a dropped value are written again where a serial run
+ * writes them. When the blocks are merged in file order (deterministic) the output is the output of a serial run, whatever
+ * the number of threads; otherwise a block is merged as soon as it is ready.
+ *
+ * The usage:
+ * ParallelEmission emission = new ParallelEmission(threads, deterministic, baseURI);
+ * emission.emit(linemap, linemap.size(), blockWriter, emitter, progressReporter);
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class ParallelEmission {
+	// the block size does not depend on the number of threads, so neither does the deterministic output
+	private static final int BLOCK_SIZE = 1024;
+	// blocks written ahead of the merge per thread, this bounds the buffered triples
+	private static final int BLOCKS_PER_THREAD = 4;
+
+	/*
+	 * Writes the triples of a block of entities through the given emitter. It is called on a worker thread, with a new
+	 * emitter for every block.
+	 */
+	public interface BlockWriter {
+		void write(List<IFCVO> block, TripleEmitter emitter) throws IOException;
+	}
+
+	private final int threads;
+	private final boolean deterministic;
+	private final String baseURI;
+
+	public ParallelEmission(int threads, boolean deterministic, String baseURI) {
+		this.threads = threads;
+		this.deterministic = deterministic;
+		this.baseURI = baseURI;
+	}
+
+	public void emit(Iterable<IFCVO> entities, int count, final BlockWriter writer, TripleEmitter target, ProgressReporter progressReporter) throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		CompletionService<BlockEmitter> completion = new ExecutorCompletionService<BlockEmitter>(pool);
+		LinkedList<Future<BlockEmitter>> pending = new LinkedList<Future<BlockEmitter>>();
+		Iterator<IFCVO> it = entities.iterator();
+		int window = threads * BLOCKS_PER_THREAD;
+		int running = 0;
+		int done = 0;
+		try {
+			while (running > 0 || it.hasNext()) {
+				while (running < window && it.hasNext()) {
+					final List<IFCVO> block = new ArrayList<IFCVO>(BLOCK_SIZE);
+					while (block.size() < BLOCK_SIZE && it.hasNext())
+						block.add(it.next());
+					Callable<BlockEmitter> task = new Callable<BlockEmitter>() {
+						@Override
+						public BlockEmitter call() throws IOException {
+							BlockEmitter emitter = new BlockEmitter(baseURI, block.size());
+							writer.write(block, emitter);
+							return emitter;
+						}
+					};
+					if (deterministic)
+						pending.add(pool.submit(task));
+					else
+						completion.submit(task);
+					running++;
+				}
+				BlockEmitter block = (deterministic ? pending.removeFirst() : completion.take()).get();
+				running--;
+				block.mergeInto(target);
+				done += block.entities;
+				if (progressReporter != null)
+					progressReporter.update(done, count);
+			}
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/*
+	 * Keeps the triples of one block, with placeholders for the value and list resources
+	 */
+	private static class BlockEmitter extends TripleEmitter {
+		private final int entities;
+		// subject, predicate and object of every triple
+		private Node[] triples = new Node[3 * BLOCK_SIZE];
+		private int size = 0;
+
+		// placeholder -> its index, and the type name and the value key (null for a list resource) of every index
+		private final Map<Node, Integer> placeholders = new IdentityHashMap<Node, Integer>();
+		private final List<String> typeNames = new ArrayList<String>();
+		private final List<String> keys = new ArrayList<String>();
+		private final Map<String, Node> values = new HashMap<String, Node>();
+		// every use of a value in order: the triple position it was used at and its index
+		private int[] usePositions = new int[BLOCK_SIZE];
+		private int[] useIndexes = new int[BLOCK_SIZE];
+		private int uses = 0;
+
+		BlockEmitter(String baseURI, int entities) {
+			super(null, baseURI, 0);
+			this.entities = entities;
+		}
+
+		@Override
+		public void triple(Node subject, Node predicate, Node object) {
+			if (size + 3 > triples.length)
+				triples = Arrays.copyOf(triples, triples.length * 2);
+			triples[size++] = subject;
+			triples[size++] = predicate;
+			triples[size++] = object;
+		}
+
+		@Override
+		public long getCount() {
+			return size / 3;
+		}
+
+		@Override
+		public Node newResource(String typeName) {
+			return placeholder(typeName, null);
+		}
+
+		@Override
+		public Node getValue(String key) {
+			Node node = values.get(key);
+			if (node != null)
+				use(node);
+			return node;
+		}
+
+		@Override
+		public Node newValue(String typeName, String key) {
+			Node node = placeholder(typeName, key);
+			values.put(key, node);
+			use(node);
+			return node;
+		}
+
+		private void use(Node node) {
+			if (uses == usePositions.length) {
+				usePositions = Arrays.copyOf(usePositions, uses * 2);
+				useIndexes = Arrays.copyOf(useIndexes, uses * 2);
+			}
+			usePositions[uses] = size;
+			useIndexes[uses] = placeholders.get(node);
+			uses++;
+		}
+
+		private Node placeholder(String typeName, String key) {
+			Node node = NodeFactory.createBlankNode(Integer.toString(typeNames.size()));
+			placeholders.put(node, typeNames.size());
+			typeNames.add(typeName);
+			keys.add(key);
+			return node;
+		}
+
+		/*
+		 * Writes the triples through target. A placeholder becomes the value resource that target already has for its key,
+		 * then the triples about it are dropped, or a new resource of target.
+		 */
+		void mergeInto(TripleEmitter target) {
+			if (target.isContentAddressed()) {
+				replayInto(target);
+				return;
+			}
+			int n = typeNames.size();
+			Node[] resolved = new Node[n];
+			boolean[] existing = new boolean[n];
+			for (int i = 0; i < n; i++) {
+				String key = keys.get(i);
+				if (key == null) {
+					resolved[i] = target.newResource(typeNames.get(i));
+					continue;
+				}
+				resolved[i] = target.getValue(key);
+				existing[i] = resolved[i] != null;
+				if (!existing[i])
+					resolved[i] = target.newValue(typeNames.get(i), key);
+			}
+			for (int i = 0; i < size; i += 3) {
+				Node subject = triples[i];
+				Node object = triples[i + 2];
+				if (subject.isBlank()) {
+					int index = placeholders.get(subject);
+					if (existing[index])
+						continue;
+					subject = resolved[index];
+				}
+				if (object.isBlank())
+					object = resolved[placeholders.get(object)];
+				target.triple(subject, triples[i + 1], object);
+			}
+		}
+
+		/*
+		 * mergeInto() for content addressed values. The list resources are numbered in the order they were created. The
+		 * values are looked up in target at every use, in the order of the uses, a value that target does not have is
+		 * created again, with its triples, just before the triple it was used for.
+		 */
+		private void replayInto(TripleEmitter target) {
+			int n = typeNames.size();
+			Node[] resolved = new Node[n];
+			for (int i = 0; i < n; i++)
+				if (keys.get(i) == null)
+					resolved[i] = target.newResource(typeNames.get(i));
+			// the triples about each value, they follow its first use
+			int[] firstTriple = new int[n];
+			int[] nextTriple = new int[size / 3];
+			Arrays.fill(firstTriple, -1);
+			for (int i = size - 3; i >= 0; i -= 3)
+				if (triples[i].isBlank()) {
+					int index = placeholders.get(triples[i]);
+					nextTriple[i / 3] = firstTriple[index];
+					firstTriple[index] = i;
+				}
+			boolean[] used = new boolean[n];
+			boolean[] created = new boolean[n];
+			int use = 0;
+			for (int i = 0; i <= size; i += 3) {
+				for (; use < uses && usePositions[use] == i; use++) {
+					int index = useIndexes[use];
+					String key = keys.get(index);
+					Node node = target.getValue(key);
+					boolean missing = node == null;
+					if (missing)
+						node = target.newValue(typeNames.get(index), key);
+					resolved[index] = node;
+					if (!used[index]) {
+						// the first use, the triples about the value come next in the block
+						used[index] = true;
+						created[index] = missing;
+					} else if (missing) {
+						for (int t = firstTriple[index]; t >= 0; t = nextTriple[t / 3])
+							target.triple(node, triples[t + 1], resolve(triples[t + 2], resolved));
+					}
+				}
+				if (i == size)
+					break;
+				Node subject = triples[i];
+				if (subject.isBlank()) {
+					int index = placeholders.get(subject);
+					if (keys.get(index) != null && !created[index])
+						continue;
+					subject = resolved[index];
+				}
+				target.triple(subject, triples[i + 1], resolve(triples[i + 2], resolved));
+			}
+		}
+
+		private Node resolve(Node node, Node[] resolved) {
+			return node.isBlank() ? resolved[placeholders.get(node)] : node;
+		}
+	}
+}
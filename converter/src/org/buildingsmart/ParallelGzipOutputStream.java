@@ -0,0 +1,147 @@
+package org.buildingsmart;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * ParallelGzipOutputStream compresses what is written to it on several threads, as pigz does: the bytes are cut into
+ * blocks of BLOCK_SIZE, every block is compressed on its own into a complete gzip member, and the members are written in
+ * the order of the blocks. A file of several gzip members is a valid gzip file, gunzip and GZIPInputStream read it as
+ * one. At most BLOCKS_PER_THREAD blocks per thread are compressed ahead of the output, which bounds the memory.
+ * close() has to be called, it writes the last block; flush() ends the block that is being filled.
+ *
+ * The usage:
+ * OutputStream out = new ParallelGzipOutputStream(new FileOutputStream("model.ttl.gz"), threads);
+ * ...
+ * out.close();
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class ParallelGzipOutputStream extends OutputStream {
+	public static final int BLOCK_SIZE = 1 << 20;
+	private static final int BLOCKS_PER_THREAD = 2;
+
+	private final OutputStream out;
+	private final ForkJoinPool pool;
+	private final int window;
+	private final LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+	private byte[] block = new byte[BLOCK_SIZE];
+	private int size = 0;
+	private boolean closed = false;
+
+	public ParallelGzipOutputStream(OutputStream out, int threads) {
+		this.out = out;
+		this.pool = new ForkJoinPool(Math.max(1, threads));
+		this.window = Math.max(1, threads) * BLOCKS_PER_THREAD;
+	}
+
+	/*
+	 * The name of an output file, with .gz when it is compressed
+	 */
+	public static String fileName(String file, boolean gzip) {
+		return gzip && !file.endsWith(".gz") ? file + ".gz" : file;
+	}
+
+	/*
+	 * Opens the output file, compressed when gzip is set, see fileName()
+	 */
+	public static OutputStream open(String file, boolean gzip, int threads) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		return gzip ? new ParallelGzipOutputStream(out, threads) : out;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (size == block.length)
+			submit();
+		block[size++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		while (length > 0) {
+			if (size == block.length)
+				submit();
+			int n = Math.min(length, block.length - size);
+			System.arraycopy(bytes, offset, block, size, n);
+			size += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (size > 0)
+			submit();
+		while (!pending.isEmpty())
+			writeFirst();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			flush();
+		} finally {
+			pool.shutdownNow();
+			out.close();
+		}
+	}
+
+	private void submit() throws IOException {
+		final byte[] data = block;
+		final int length = size;
+		pending.add(pool.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws IOException {
+				ByteArrayOutputStream member = new ByteArrayOutputStream(length / 4 + 64);
+				GZIPOutputStream gzip = new GZIPOutputStream(member, 1 << 16);
+				gzip.write(data, 0, length);
+				gzip.close();
+				return member.toByteArray();
+			}
+		}));
+		block = new byte[BLOCK_SIZE];
+		size = 0;
+		while (pending.size() >= window)
+			writeFirst();
+	}
+
+	private void writeFirst() throws IOException {
+		try {
+			out.write(pending.removeFirst().get());
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+}
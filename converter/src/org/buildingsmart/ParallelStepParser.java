@@ -0,0 +1,216 @@
+package org.buildingsmart;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.buildingsmart.vo.IFCVO;
+import org.buildingsmart.vo.SymbolTable;
+
+/*
+ * ParallelStepParser parses an IFC file on a fork-join pool. The file is cut into byte ranges that always start right
+ * after a statement ending ';', and every range is tokenized by its own StepTokenizer.
+ *
+ * Finding a safe boundary needs to know whether a position is inside a quoted string or a comment, where a quote or
+ * a ';' means nothing. The scanner has a few states (outside, after a '/', in a string, in a comment, after a '*' in a
+ * comment) and a chunk can start in any of them, so the chunks are first scanned in parallel once from every state, for
+ * the state at the end and the first ';' outside strings and comments. Going through the chunks in order, the end state
+ * of a chunk then selects the scan of the next one. ('' escapes leave a string and enter it again.)
+ * When a range still does not end on a statement, parse() returns null and the caller parses the file sequentially.
+ *
+ * The usage:
+ * ParallelStepParser parser = new ParallelStepParser(fileInputStream, threads, symbols);
+ * List<List<IFCVO>> entities = parser.parse(); // one list per range, in file order
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class ParallelStepParser {
+	private static final long MIN_CHUNK_SIZE = 1 << 22;
+	private static final long MAX_CHUNK_SIZE = 1 << 28;
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	// the states of the boundary scan
+	private static final int OUTSIDE = 0;
+	private static final int SLASH = 1;
+	private static final int STRING = 2;
+	private static final int COMMENT = 3;
+	private static final int COMMENT_STAR = 4;
+	private static final int STATES = 5;
+
+	private final FileChannel channel;
+	private final int threads;
+	private final SymbolTable symbols;
+	private EntityTypeFilter typeFilter = null;
+
+	public ParallelStepParser(FileInputStream inputStream, int threads, SymbolTable symbols) {
+		this.channel = inputStream.getChannel();
+		this.threads = threads;
+		this.symbols = symbols;
+	}
+
+	/*
+	 * See StepTokenizer.setTypeFilter()
+	 */
+	public void setTypeFilter(EntityTypeFilter typeFilter) {
+		this.typeFilter = typeFilter;
+	}
+
+	/*
+	 * The entities of every range, or null when a range did not end on a statement
+	 */
+	public List<List<IFCVO>> parse() throws IOException {
+		long start = channel.position();
+		long size = channel.size() - start;
+		long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size / (threads * CHUNKS_PER_THREAD) + 1));
+		int chunks = (int) ((size + chunkSize - 1) / chunkSize);
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			// 1. end state and boundary candidate per chunk and start state
+			List<Callable<long[]>> scans = new ArrayList<Callable<long[]>>();
+			for (int i = 0; i < chunks; i++) {
+				final long from = start + i * chunkSize;
+				final long to = Math.min(from + chunkSize, start + size);
+				scans.add(new Callable<long[]>() {
+					@Override
+					public long[] call() throws IOException {
+						return scanChunk(from, to);
+					}
+				});
+			}
+			List<long[]> scanned = getAll(pool.invokeAll(scans));
+
+			List<Long> boundaries = new ArrayList<Long>();
+			boundaries.add(start);
+			int state = OUTSIDE;
+			for (int i = 0; i < chunks; i++) {
+				long[] scan = scanned.get(i);
+				// the candidate that follows the first chunk is never needed, the first range starts at the start
+				if (i > 0) {
+					long boundary = scan[STATES + state];
+					if (boundary >= 0 && boundary > boundaries.get(boundaries.size() - 1))
+						boundaries.add(boundary);
+				}
+				state = (int) scan[state];
+			}
+			boundaries.add(start + size);
+
+			// 2. tokenize every range
+			List<Callable<List<IFCVO>>> parses = new ArrayList<Callable<List<IFCVO>>>();
+			for (int i = 0; i + 1 < boundaries.size(); i++) {
+				final long from = boundaries.get(i);
+				final long to = boundaries.get(i + 1);
+				parses.add(new Callable<List<IFCVO>>() {
+					@Override
+					public List<IFCVO> call() throws IOException {
+						return parseRange(from, to);
+					}
+				});
+			}
+			List<List<IFCVO>> ranges = getAll(pool.invokeAll(parses));
+			return ranges.contains(null) ? null : ranges;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/*
+	 * Returns for every start state the state at the end of the chunk, followed for every start state by the position
+	 * after the first ';' outside strings and comments, -1 when there is none
+	 */
+	private long[] scanChunk(long from, long to) throws IOException {
+		ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+		long[] result = new long[2 * STATES];
+		int[] states = new int[STATES];
+		for (int s = 0; s < STATES; s++) {
+			states[s] = s;
+			result[STATES + s] = -1;
+		}
+		int limit = buffer.limit();
+		for (int i = 0; i < limit; i++) {
+			byte b = buffer.get(i);
+			for (int s = 0; s < STATES; s++) {
+				int state = states[s];
+				switch (state) {
+				case OUTSIDE:
+				case SLASH:
+					if (b == '\'')
+						state = STRING;
+					else if (b == '*' && state == SLASH)
+						state = COMMENT;
+					else if (b == '/')
+						state = SLASH;
+					else {
+						state = OUTSIDE;
+						if (b == ';' && result[STATES + s] < 0)
+							result[STATES + s] = from + i + 1;
+					}
+					break;
+				case STRING:
+					if (b == '\'')
+						state = OUTSIDE;
+					break;
+				default:
+					if (b == '/' && state == COMMENT_STAR)
+						state = OUTSIDE;
+					else
+						state = b == '*' ? COMMENT_STAR : COMMENT;
+				}
+				states[s] = state;
+			}
+		}
+		for (int s = 0; s < STATES; s++)
+			result[s] = states[s];
+		return result;
+	}
+
+	private List<IFCVO> parseRange(long from, long to) throws IOException {
+		List<IFCVO> entities = new ArrayList<IFCVO>();
+		if (to <= from)
+			return entities;
+		StepTokenizer tokenizer = new StepTokenizer(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from), symbols);
+		tokenizer.setTypeFilter(typeFilter);
+		IFCVO ifcvo;
+		while ((ifcvo = tokenizer.nextEntity()) != null)
+			entities.add(ifcvo);
+		tokenizer.close();
+		// a boundary inside a string or comment leaves the end of the range in the middle of a statement
+		return tokenizer.isComplete() ? entities : null;
+	}
+
+	private static <T> List<T> getAll(List<Future<T>> futures) throws IOException {
+		List<T> results = new ArrayList<T>(futures.size());
+		try {
+			for (Future<T> future : futures)
+				results.add(future.get());
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+		return results;
+	}
+}
@@ -0,0 +1,173 @@
+package org.buildingsmart;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.buildingsmart.vo.AttributeStore;
+import org.buildingsmart.vo.IFCVO;
+import org.buildingsmart.vo.SymbolTable;
+
+/*
+ * PropertySetIndex keeps what the flattened property set triples need while the entities go by: the IfcRelDefinesByProperties
+ * with their objects and property sets, the names and single value properties of the IfcPropertySets, and the name and the
+ * nominal value of every IfcPropertySingleValue. Nothing else of the lines is kept, so it can be filled from the first pass
+ * of a streaming conversion as well as from the parsed model, in any order of the lines.
+ * visit() then reports every object, property set name, property name and value, in the order of the relations.
+ *
+ * The usage:
+ * PropertySetIndex psets = new PropertySetIndex(symbols);
+ * psets.add(ifcvo);
+ * psets.visit(visitor);
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class PropertySetIndex {
+	private static final String REL_DEFINES_BY_PROPERTIES = "IFCRELDEFINESBYPROPERTIES";
+	private static final String PROPERTY_SET = "IFCPROPERTYSET";
+	private static final String PROPERTY_SINGLE_VALUE = "IFCPROPERTYSINGLEVALUE";
+
+	/*
+	 * Receives one property value of one object. The names and the value are the tokens as written in the file, and the
+	 * type of the value is the SymbolTable id of its type name, as IFCLABEL.
+	 */
+	public interface Visitor {
+		void property(long object, String propertySet, String property, int valueType, String value) throws IOException;
+	}
+
+	private final SymbolTable symbols;
+	// the objects and the property sets of every relation, in file order
+	private final List<long[]> relatedObjects = new ArrayList<long[]>();
+	private final List<long[]> relatingSets = new ArrayList<long[]>();
+	// the line of every property set and property -> its position in the list
+	private final LineTable propertySetLines = new LineTable();
+	private final List<PropertySet> propertySets = new ArrayList<PropertySet>();
+	private final LineTable propertyLines = new LineTable();
+	private final List<Property> properties = new ArrayList<Property>();
+
+	public PropertySetIndex(SymbolTable symbols) {
+		this.symbols = symbols;
+	}
+
+	/*
+	 * Takes what it needs from the line, the tokens can be reused afterwards
+	 */
+	public void add(IFCVO vo) {
+		AttributeStore store = vo.getAttributeStore();
+		if (store == null)
+			return;
+		String type = ExpressReader.formatClassName(symbols.getName(vo.getType()));
+		int from = vo.getAttributesFrom();
+		int to = vo.getAttributesTo();
+		if (REL_DEFINES_BY_PROPERTIES.equals(type)) {
+			long[] objects = references(store, store.attribute(from, to, 4));
+			long[] sets = references(store, store.attribute(from, to, 5));
+			if (objects.length > 0 && sets.length > 0) {
+				relatedObjects.add(objects);
+				relatingSets.add(sets);
+			}
+		} else if (PROPERTY_SET.equals(type)) {
+			String name = string(store, store.attribute(from, to, 2));
+			if (name != null) {
+				propertySetLines.put(vo.getLine_num(), propertySets.size());
+				propertySets.add(new PropertySet(name, references(store, store.attribute(from, to, 4))));
+			}
+		} else if (PROPERTY_SINGLE_VALUE.equals(type)) {
+			String name = string(store, store.attribute(from, to, 0));
+			int value = store.attribute(from, to, 2);
+			// only a typed value, as IFCLABEL('2HR'), tells the type of the literal
+			if (name == null || value < 0 || store.kind(value) != AttributeStore.TYPED)
+				return;
+			int list = store.next(value);
+			String lexical = list < to && store.kind(list) == AttributeStore.LIST && store.listLength(list) > 0 ? string(store, list + 1) : null;
+			if (lexical != null) {
+				propertyLines.put(vo.getLine_num(), properties.size());
+				properties.add(new Property(name, store.symbol(value), lexical));
+			}
+		}
+	}
+
+	public void visit(Visitor visitor) throws IOException {
+		for (int n = 0; n < relatedObjects.size(); n++) {
+			for (long set : relatingSets.get(n)) {
+				long setIndex = propertySetLines.get(set);
+				if (setIndex < 0)
+					continue;
+				PropertySet propertySet = propertySets.get((int) setIndex);
+				for (long p : propertySet.properties) {
+					long propertyIndex = propertyLines.get(p);
+					if (propertyIndex < 0)
+						continue;
+					Property property = properties.get((int) propertyIndex);
+					for (long object : relatedObjects.get(n))
+						visitor.property(object, propertySet.name, property.name, property.valueType, property.value);
+				}
+			}
+		}
+	}
+
+	// the line numbers of a reference or of a list of references, a typed list as in IFC4 included
+	private static long[] references(AttributeStore store, int index) {
+		if (index < 0)
+			return new long[0];
+		if (store.kind(index) == AttributeStore.TYPED)
+			index = store.next(index);
+		if (store.kind(index) == AttributeStore.REF)
+			return new long[] { store.reference(index) };
+		if (store.kind(index) != AttributeStore.LIST)
+			return new long[0];
+		int end = store.next(index);
+		long[] result = new long[end - index - 1];
+		int count = 0;
+		for (int i = index + 1; i < end; i = store.next(i))
+			if (store.kind(i) == AttributeStore.REF)
+				result[count++] = store.reference(i);
+		return count == result.length ? result : Arrays.copyOf(result, count);
+	}
+
+	// a string token as the tokenizer keeps it, with its opening quote, or null
+	private static String string(AttributeStore store, int index) {
+		if (index < 0 || store.kind(index) != AttributeStore.STRING)
+			return null;
+		return store.string(index);
+	}
+
+	private static class PropertySet {
+		final String name;
+		final long[] properties;
+
+		PropertySet(String name, long[] properties) {
+			this.name = name;
+			this.properties = properties;
+		}
+	}
+
+	private static class Property {
+		final String name;
+		final int valueType;
+		final String value;
+
+		Property(String name, int valueType, String value) {
+			this.name = name;
+			this.valueType = valueType;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package org.buildingsmart;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.impl.Util;
+import org.apache.jena.shared.InvalidPropertyURIException;
+
+import fi.ni.rdf.Namespace;
+
+/*
+ * RdfXmlTripleSink writes the triples as RDF/XML while they come, without a Model: the triples of a subject that come
+ * one after the other go into one rdf:Description, every triple as a property element. The prefixes that are given are
+ * declared on rdf:RDF, a predicate in another namespace declares it on its own element. Like the RDF/XML writer of Jena
+ * it fails on a predicate that does not end in an XML name.
+ *
+ * The usage:
+ * RdfXmlTripleSink sink = new RdfXmlTripleSink(writer, model.getNsPrefixMap());
+ * engine.convert(sink);
+ * sink.close();
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class RdfXmlTripleSink implements TripleSink, Closeable {
+	private final Writer out;
+	// namespace -> prefix
+	private final Map<String, String> prefixes = new HashMap<String, String>();
+	// blank node label -> rdf:nodeID
+	private final Map<String, String> nodeIDs = new HashMap<String, String>();
+	private Node subject = null;
+
+	/*
+	 * The prefixes are prefix -> namespace, as in a PrefixMapping
+	 */
+	public RdfXmlTripleSink(Writer out, Map<String, String> prefixes) throws IOException {
+		this.out = out;
+		out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<rdf:RDF\n    xmlns:rdf=\"" + Namespace.RDF + "\"");
+		this.prefixes.put(Namespace.RDF, "rdf");
+		for (Map.Entry<String, String> prefix : prefixes.entrySet()) {
+			if (this.prefixes.containsKey(prefix.getValue()) || prefix.getKey().equals("rdf") || prefix.getKey().equals("xml")
+					|| !isName(prefix.getKey()))
+				continue;
+			this.prefixes.put(prefix.getValue(), prefix.getKey());
+			out.write("\n    xmlns:" + prefix.getKey() + "=\"" + escape(prefix.getValue()) + "\"");
+		}
+		out.write(">\n");
+	}
+
+	@Override
+	public void triple(Node subject, Node predicate, Node object) {
+		try {
+			if (!subject.equals(this.subject)) {
+				if (this.subject != null)
+					out.write("  </rdf:Description>\n");
+				if (subject.isBlank())
+					out.write("  <rdf:Description rdf:nodeID=\"" + nodeID(subject) + "\">\n");
+				else
+					out.write("  <rdf:Description rdf:about=\"" + escape(subject.getURI()) + "\">\n");
+				this.subject = subject;
+			}
+
+			String uri = predicate.getURI();
+			int split = Util.splitNamespaceXML(uri);
+			if (split >= uri.length())
+				throw new InvalidPropertyURIException(uri);
+			String prefix = prefixes.get(uri.substring(0, split));
+			String element = prefix != null ? prefix + ":" + uri.substring(split) : "j.0:" + uri.substring(split);
+			out.write("    <" + element);
+			if (prefix == null)
+				out.write(" xmlns:j.0=\"" + escape(uri.substring(0, split)) + "\"");
+
+			if (object.isURI())
+				out.write(" rdf:resource=\"" + escape(object.getURI()) + "\"/>\n");
+			else if (object.isBlank())
+				out.write(" rdf:nodeID=\"" + nodeID(object) + "\"/>\n");
+			else {
+				String language = object.getLiteralLanguage();
+				if (language != null && language.length() > 0)
+					out.write(" xml:lang=\"" + escape(language) + "\"");
+				else if (object.getLiteralDatatypeURI() != null)
+					out.write(" rdf:datatype=\"" + escape(object.getLiteralDatatypeURI()) + "\"");
+				out.write(">" + escape(object.getLiteralLexicalForm()) + "</" + element + ">\n");
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/*
+	 * Ends the document and closes the writer
+	 */
+	@Override
+	public void close() throws IOException {
+		if (subject != null)
+			out.write("  </rdf:Description>\n");
+		out.write("</rdf:RDF>\n");
+		out.close();
+	}
+
+	private String nodeID(Node node) {
+		String id = nodeIDs.get(node.getBlankNodeLabel());
+		if (id == null) {
+			id = "A" + nodeIDs.size();
+			nodeIDs.put(node.getBlankNodeLabel(), id);
+		}
+		return id;
+	}
+
+	private static boolean isName(String prefix) {
+		if (prefix.length() == 0 || !(Character.isLetter(prefix.charAt(0)) || prefix.charAt(0) == '_'))
+			return false;
+		for (int i = 1; i < prefix.length(); i++) {
+			char c = prefix.charAt(i);
+			if (!(Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.'))
+				return false;
+		}
+		return true;
+	}
+
+	// the text of an element or of an attribute in double quotes
+	private static String escape(String text) {
+		StringBuilder escaped = null;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			String entity;
+			switch (c) {
+			case '&':
+				entity = "&amp;";
+				break;
+			case '<':
+				entity = "&lt;";
+				break;
+			case '>':
+				entity = "&gt;";
+				break;
+			case '"':
+				entity = "&quot;";
+				break;
+			case '\r':
+				entity = "&#13;";
+				break;
+			default:
+				entity = null;
+			}
+			if (entity == null) {
+				if (escaped != null)
+					escaped.append(c);
+				continue;
+			}
+			if (escaped == null)
+				escaped = new StringBuilder(text.length() + 16).append(text, 0, i);
+			escaped.append(entity);
+		}
+		return escaped == null ? text : escaped.toString();
+	}
+}
@@ -0,0 +1,119 @@
+package org.buildingsmart;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.buildingsmart.vo.AttributeStore;
+import org.buildingsmart.vo.IFCVO;
+import org.buildingsmart.vo.SymbolTable;
+
+/*
+ * SpatialIndex keeps the spatial decomposition and containment of a model while the entities go by: the parent of every
+ * object in an IfcRelAggregates, the whole for its parts, and the spatial structure of every element in an
+ * IfcRelContainedInSpatialStructure. Like PropertySetIndex it takes only the references of the relations, so it can be
+ * filled from the first pass of a streaming conversion as well as from the parsed model.
+ * visit() walks from every object up through all of its ancestors, so that a wall contained in a storey gets the storey,
+ * the building and the site, and a flight of a stair contained in a storey gets the stair and the same three.
+ *
+ * The usage:
+ * SpatialIndex spatial = new SpatialIndex(symbols);
+ * spatial.add(ifcvo);
+ * spatial.visit(visitor);
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class SpatialIndex {
+	public static final String SPATIAL_NS = "http://linkedbuildingdata.net/ifc/spatial#";
+	public static final String CONTAINED_IN = SPATIAL_NS + "containedIn";
+
+	private static final String REL_AGGREGATES = "IFCRELAGGREGATES";
+	private static final String REL_CONTAINED_IN_SPATIAL_STRUCTURE = "IFCRELCONTAINEDINSPATIALSTRUCTURE";
+
+	/*
+	 * Receives one object and one of its ancestors, the nearest first
+	 */
+	public interface Visitor {
+		void ancestor(long object, long ancestor) throws IOException;
+	}
+
+	private final SymbolTable symbols;
+	// object -> its parent, the first relation of an object wins
+	private final LineTable parents = new LineTable();
+
+	public SpatialIndex(SymbolTable symbols) {
+		this.symbols = symbols;
+	}
+
+	/*
+	 * Takes what it needs from the line, the tokens can be reused afterwards
+	 */
+	public void add(IFCVO vo) {
+		AttributeStore store = vo.getAttributeStore();
+		if (store == null)
+			return;
+		String type = ExpressReader.formatClassName(symbols.getName(vo.getType()));
+		int from = vo.getAttributesFrom();
+		int to = vo.getAttributesTo();
+		if (REL_AGGREGATES.equals(type))
+			addChildren(store, store.attribute(from, to, 4), store.attribute(from, to, 5));
+		else if (REL_CONTAINED_IN_SPATIAL_STRUCTURE.equals(type))
+			addChildren(store, store.attribute(from, to, 5), store.attribute(from, to, 4));
+	}
+
+	private void addChildren(AttributeStore store, int parent, int children) {
+		if (parent < 0 || children < 0 || store.kind(parent) != AttributeStore.REF || store.kind(children) != AttributeStore.LIST)
+			return;
+		long line = store.reference(parent);
+		int end = store.next(children);
+		for (int i = children + 1; i < end; i = store.next(i))
+			if (store.kind(i) == AttributeStore.REF && !parents.containsKey(store.reference(i)))
+				parents.put(store.reference(i), line);
+	}
+
+	public int size() {
+		return parents.size();
+	}
+
+	/*
+	 * Visits the objects in the order of their line numbers, each with all of its ancestors
+	 */
+	public void visit(Visitor visitor) throws IOException {
+		// the ancestors of the object so far, a broken file may relate an object to itself in a cycle
+		long[] path = new long[16];
+		for (long object : parents.lines()) {
+			int depth = 0;
+			long ancestor = parents.get(object);
+			while (ancestor >= 0 && ancestor != object && !contains(path, depth, ancestor)) {
+				visitor.ancestor(object, ancestor);
+				if (depth == path.length)
+					path = Arrays.copyOf(path, depth * 2);
+				path[depth++] = ancestor;
+				ancestor = parents.get(ancestor);
+			}
+		}
+	}
+
+	// the chains are a few levels deep, a linear search is enough
+	private static boolean contains(long[] path, int depth, long line) {
+		for (int n = 0; n < depth; n++)
+			if (path[n] == line)
+				return true;
+		return false;
+	}
+}
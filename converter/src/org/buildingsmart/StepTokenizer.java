@@ -0,0 +1,428 @@
+package org.buildingsmart;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.buildingsmart.vo.AttributeStore;
+import org.buildingsmart.vo.IFCVO;
+import org.buildingsmart.vo.SymbolTable;
+
+/*
+ * StepTokenizer reads the DATA section of an IFC (ISO 10303-21) file and turns every '#id=NAME(...);' statement into an IFCVO.
+ * The statements are tokenized directly on the bytes of the file: files are memory-mapped window by window through their
+ * FileChannel, other streams are read into a plain growing buffer. The attribute tokens are written as bytes into an
+ * AttributeStore that is shared by the IFCVO objects of the tokenizer. Entity names and type names are interned in the
+ * SymbolTable of the conversion.
+ *
+ * The usage:
+ * StepTokenizer tokenizer = new StepTokenizer(inputStream, symbols);
+ * IFCVO vo;
+ * while ((vo = tokenizer.nextEntity()) != null) { ... }
+ * tokenizer.close();
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class StepTokenizer {
+	private static final int MAP_WINDOW_SIZE = 1 << 28;
+	private static final int STREAM_BUFFER_SIZE = 1 << 16;
+	private static final int NAME_CACHE_SIZE = 1 << 10;
+
+	private final InputStream inputStream;
+	private final FileChannel channel;
+	private final long channelSize;
+	private final Charset charset = Charset.defaultCharset();
+
+	// the current window on the input: index 0 of the buffer is at offset windowStart of the input
+	private ByteBuffer buffer;
+	private long windowStart;
+	private int windowSize = MAP_WINDOW_SIZE;
+	private boolean endOfInput = false;
+	private boolean complete = true;
+
+	private final SymbolTable symbols;
+	private AttributeStore store;
+	private boolean reuseStore = false;
+	private EntityTypeFilter typeFilter = null;
+	private byte[] scratch = new byte[256];
+	private int[] listStack = new int[16];
+	// the last names seen, so that the SymbolTable is only asked for new names
+	private final String[] nameCache = new String[NAME_CACHE_SIZE];
+	private final int[] symbolCache = new int[NAME_CACHE_SIZE];
+
+	public StepTokenizer(InputStream inputStream, SymbolTable symbols) throws IOException {
+		this.inputStream = inputStream;
+		this.symbols = symbols;
+		this.store = new AttributeStore(charset, symbols);
+		if (inputStream instanceof FileInputStream) {
+			channel = ((FileInputStream) inputStream).getChannel();
+			windowStart = channel.position();
+			channelSize = channel.size();
+			mapWindow();
+		} else {
+			channel = null;
+			channelSize = -1;
+			buffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+			buffer.limit(0);
+			fill();
+		}
+	}
+
+	/*
+	 * Tokenizes a complete range of an IFC file that is already in memory
+	 */
+	public StepTokenizer(ByteBuffer buffer, SymbolTable symbols) {
+		this.inputStream = null;
+		this.symbols = symbols;
+		this.store = new AttributeStore(charset, symbols);
+		this.channel = null;
+		this.channelSize = -1;
+		this.buffer = buffer;
+		this.endOfInput = true;
+	}
+
+	/*
+	 * Keep only the attributes of the last entity: an IFCVO is then only valid until the next call of nextEntity()
+	 */
+	public void setReuseStore(boolean reuseStore) {
+		this.reuseStore = reuseStore;
+	}
+
+	/*
+	 * The lines of the types that the filter leaves out come without their attributes, they are not tokenized
+	 */
+	public void setTypeFilter(EntityTypeFilter typeFilter) {
+		this.typeFilter = typeFilter;
+	}
+
+	/*
+	 * Returns the next '#id=...;' statement of the file, or null when the end of the input is reached
+	 */
+	public IFCVO nextEntity() throws IOException {
+		while (true) {
+			int start = skipWhitespaceAndComments(buffer.position());
+			if (start < 0)
+				return null;
+			int end = findStatementEnd(start);
+			if (end < 0) {
+				// the statement does not fit in the current window
+				if (!refill(start)) {
+					complete = false;
+					return null;
+				}
+				continue;
+			}
+			buffer.position(end + 1);
+			if (buffer.get(start) == '#')
+				return parseStatement(start, end);
+			// HEADER statements, DATA; ENDSEC; etc.
+		}
+	}
+
+	/*
+	 * False when the input ended in the middle of a statement, which is then not returned
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	public void close() throws IOException {
+		buffer = null;
+		store.trimToSize();
+		if (inputStream != null)
+			inputStream.close();
+	}
+
+	private int skipWhitespaceAndComments(int pos) throws IOException {
+		while (true) {
+			int limit = buffer.limit();
+			while (pos < limit && buffer.get(pos) <= ' ')
+				pos++;
+			if (pos + 1 >= limit) {
+				if (endOfInput)
+					return pos < limit ? pos : -1;
+				if (!refill(pos))
+					return -1;
+				pos = 0;
+				continue;
+			}
+			if (buffer.get(pos) != '/' || buffer.get(pos + 1) != '*')
+				return pos;
+			int n = pos + 2;
+			while (n + 1 < limit && !(buffer.get(n) == '*' && buffer.get(n + 1) == '/'))
+				n++;
+			if (n + 1 >= limit) {
+				if (!refill(pos))
+					return -1;
+				pos = 0;
+				continue;
+			}
+			pos = n + 2;
+		}
+	}
+
+	/*
+	 * Index of the ';' that closes the statement starting at start, or -1 when it is not inside the current window.
+	 * A ';' inside a quoted string does not end the statement.
+	 */
+	private int findStatementEnd(int start) {
+		boolean inString = false;
+		int limit = buffer.limit();
+		for (int i = start; i < limit; i++) {
+			byte b = buffer.get(i);
+			if (b == '\'')
+				inString = !inString;
+			else if (b == ';' && !inString)
+				return i;
+		}
+		return -1;
+	}
+
+	/*
+	 * Moves the window so that it starts at position keepFrom of the current window, and reads/maps more of the input.
+	 * Returns false when nothing more could be read.
+	 */
+	private boolean refill(int keepFrom) throws IOException {
+		if (endOfInput)
+			return false;
+		if (channel != null) {
+			if (keepFrom == 0)
+				windowSize = (int) Math.min(Integer.MAX_VALUE, 2L * windowSize);
+			windowStart += keepFrom;
+			mapWindow();
+			return true;
+		}
+		int remaining = buffer.limit() - keepFrom;
+		if (keepFrom == 0 && remaining == buffer.capacity()) {
+			ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+			larger.put(buffer.array(), 0, remaining);
+			buffer = larger;
+		} else {
+			System.arraycopy(buffer.array(), keepFrom, buffer.array(), 0, remaining);
+		}
+		buffer.limit(remaining);
+		buffer.position(0);
+		fill();
+		return true;
+	}
+
+	private void mapWindow() throws IOException {
+		long size = Math.min(windowSize, channelSize - windowStart);
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, size);
+		if (windowStart + size >= channelSize)
+			endOfInput = true;
+	}
+
+	private void fill() throws IOException {
+		byte[] array = buffer.array();
+		int limit = buffer.limit();
+		while (limit < array.length) {
+			int n = inputStream.read(array, limit, array.length - limit);
+			if (n < 0) {
+				endOfInput = true;
+				break;
+			}
+			limit += n;
+		}
+		buffer.limit(limit);
+	}
+
+	/*
+	 * Same state machine as the former line based parser: state 0 reads the line number, state 1 the entity name,
+	 * state 2 the attributes (nested lists become LIST tokens) and state 3 is inside a quoted string.
+	 */
+	private IFCVO parseStatement(int start, int end) {
+		IFCVO ifcvo = new IFCVO();
+		int i = start + 1;
+
+		long line_num = 0;
+		boolean digits = false;
+		for (; i < end; i++) {
+			byte b = buffer.get(i);
+			if (b == '=')
+				break;
+			if (b >= '0' && b <= '9') {
+				line_num = line_num * 10 + (b - '0');
+				digits = true;
+			}
+		}
+		ifcvo.setLine_num(digits ? line_num : Long.MIN_VALUE);
+		i++;
+
+		int nameLength = 0;
+		for (; i < end; i++) {
+			byte b = buffer.get(i);
+			if (b == '(')
+				break;
+			if (b > ' ')
+				nameLength = append(nameLength, b);
+		}
+		int type = symbol(0, nameLength);
+		ifcvo.setType(type);
+		ifcvo.setName(symbols.getName(type));
+		if (i >= end || (typeFilter != null && !typeFilter.accepts(type, symbols)))
+			return ifcvo;
+		i++;
+
+		if (reuseStore)
+			store.clear();
+		else if (store.isFull()) {
+			store.trimToSize();
+			store = new AttributeStore(charset, symbols);
+		}
+		int from = store.size();
+		int depth = 0;
+		boolean inString = false;
+		int length = 0;
+		for (; i < end; i++) {
+			byte b = buffer.get(i);
+			if (inString) {
+				if (b == '\'')
+					inString = false;
+				else if (b != '\r' && b != '\n')
+					length = append(length, b);
+				continue;
+			}
+			switch (b) {
+			case '\'':
+				inString = true;
+				length = append(length, b);
+				break;
+			case '(':
+				addTypeName(length);
+				length = 0;
+				if (depth == listStack.length)
+					listStack = Arrays.copyOf(listStack, depth * 2);
+				listStack[depth++] = store.openList();
+				break;
+			case ')':
+				addToken(length);
+				length = 0;
+				if (depth == 0) {
+					// line is done
+					ifcvo.setAttributes(store, from, store.size());
+					return ifcvo;
+				}
+				store.closeList(listStack[--depth]);
+				break;
+			case ',':
+				addToken(length);
+				length = 0;
+				break;
+			case '\r':
+			case '\n':
+				break;
+			default:
+				length = append(length, b);
+			}
+		}
+		// the statement ended without closing all lists
+		while (depth > 0)
+			store.closeList(listStack[--depth]);
+		ifcvo.setAttributes(store, from, store.size());
+		return ifcvo;
+	}
+
+	private int append(int length, byte b) {
+		if (length == scratch.length) {
+			byte[] larger = new byte[scratch.length * 2];
+			System.arraycopy(scratch, 0, larger, 0, length);
+			scratch = larger;
+		}
+		scratch[length] = b;
+		return length + 1;
+	}
+
+	/*
+	 * Adds the trimmed token in scratch[0..length) to the store: '$', '*' and '#id' get their own token kinds, everything
+	 * else is kept as text.
+	 */
+	private void addToken(int length) {
+		int from = 0;
+		while (from < length && scratch[from] <= ' ')
+			from++;
+		while (length > from && scratch[length - 1] <= ' ')
+			length--;
+		if (length == from)
+			return;
+		if (length - from == 1) {
+			if (scratch[from] == '$') {
+				store.addNull();
+				return;
+			}
+			if (scratch[from] == '*') {
+				store.addDerived();
+				return;
+			}
+		}
+		if (scratch[from] == '#' && length - from > 1 && length - from < 19) {
+			long line_num = 0;
+			int n = from + 1;
+			for (; n < length && scratch[n] >= '0' && scratch[n] <= '9'; n++)
+				line_num = line_num * 10 + (scratch[n] - '0');
+			if (n == length) {
+				store.addReference(line_num);
+				return;
+			}
+		}
+		store.addString(scratch, from, length - from);
+	}
+
+	/*
+	 * The token in front of a '(' is the type name of a typed value, as IFCLABEL in IFCLABEL('abc')
+	 */
+	private void addTypeName(int length) {
+		int from = 0;
+		while (from < length && scratch[from] <= ' ')
+			from++;
+		while (length > from && scratch[length - 1] <= ' ')
+			length--;
+		if (length > from && Character.isLetter(scratch[from]))
+			store.addTyped(symbol(from, length));
+		else
+			addToken(length);
+	}
+
+	/*
+	 * SymbolTable id of the name in scratch[from..to)
+	 */
+	private int symbol(int from, int to) {
+		int length = to - from;
+		int hash = 0;
+		for (int n = from; n < to; n++)
+			hash = 31 * hash + scratch[n];
+		int slot = hash & (NAME_CACHE_SIZE - 1);
+		String name = nameCache[slot];
+		if (name != null && name.length() == length) {
+			boolean same = true;
+			for (int n = 0; n < length && same; n++)
+				same = name.charAt(n) == scratch[from + n];
+			if (same)
+				return symbolCache[slot];
+		}
+		name = new String(scratch, from, length, charset);
+		nameCache[slot] = name;
+		symbolCache[slot] = symbols.intern(name);
+		return symbolCache[slot];
+	}
+}
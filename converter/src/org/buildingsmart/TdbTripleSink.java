@@ -0,0 +1,88 @@
+package org.buildingsmart;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.sparql.core.DatasetGraph;
+
+/*
+ * TdbTripleSink adds the triples to a named graph of a Jena TDB dataset, without writing and parsing them as text in
+ * between. The triples are added in write transactions of BATCH_SIZE triples each, so a large model does not build up
+ * one huge transaction journal. The named graph is emptied first, so converting a file again replaces its graph; the
+ * other graphs of the dataset are kept, which lets several files be loaded into one dataset.
+ * When a conversion fails, the batches committed so far stay in the graph.
+ *
+ * The usage:
+ * Dataset dataset = TDBFactory.createDataset(directory);
+ * TdbTripleSink sink = new TdbTripleSink(dataset, graphName);
+ * engine.convert(sink);
+ * sink.close();
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class TdbTripleSink implements TripleSink {
+	private static final int BATCH_SIZE = 1 << 20;
+
+	private final Dataset dataset;
+	private final Node graph;
+	private final DatasetGraph datasetGraph;
+	private int pending = 0;
+	private long count = 0;
+
+	public TdbTripleSink(Dataset dataset, String graphName) {
+		this.dataset = dataset;
+		this.graph = NodeFactory.createURI(graphName);
+		dataset.begin(ReadWrite.WRITE);
+		datasetGraph = dataset.asDatasetGraph();
+		datasetGraph.deleteAny(graph, Node.ANY, Node.ANY, Node.ANY);
+	}
+
+	@Override
+	public void triple(Node subject, Node predicate, Node object) {
+		datasetGraph.add(graph, subject, predicate, object);
+		count++;
+		if (++pending == BATCH_SIZE) {
+			dataset.commit();
+			dataset.end();
+			dataset.begin(ReadWrite.WRITE);
+			pending = 0;
+		}
+	}
+
+	/*
+	 * Commits the last batch
+	 */
+	public void close() {
+		dataset.commit();
+		dataset.end();
+	}
+
+	/*
+	 * Drops the last batch, after a failed conversion
+	 */
+	public void abort() {
+		dataset.abort();
+		dataset.end();
+	}
+
+	public long getCount() {
+		return count;
+	}
+}
@@ -0,0 +1,166 @@
+package org.buildingsmart;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.vocabulary.RDF;
+
+/*
+ * TripleEmitter is the emission layer of a conversion. It builds the instance IRIs (baseURI + type name + "_" + number) in
+ * one reused StringBuilder, keeps the Nodes of the recently used entities so that an entity referenced again and again, such
+ * as an IfcOwnerHistory, gets the same Node without building its IRI again, and passes the Nodes straight on to the
+ * TripleSink. The predicates and classes come as ready Nodes from the ConversionPlan.
+ * The value and list resources are numbered by the emitter, from the first number after the entities on. A value resource is
+ * kept by its key, so that equal values share one resource.
+ * With a value namespace the value resources are content addressed instead: the IRI is the namespace, the type name and
+ * the ContentHash of the key, so equal values get the same IRI in every file and run. Then only the recently used values
+ * are kept, to skip writing their triples again. A value that was dropped from the cache writes the same triples again,
+ * ParallelEmission replays the uses of the values in order to drop the same ones.
+ *
+ * The usage:
+ * TripleEmitter emitter = new TripleEmitter(sink, baseURI, IDcounter);
+ * Node s = emitter.entity("IfcWall", 123);
+ * emitter.type(s, entityPlan.type);
+ * Node v = emitter.getValue(key);
+ * if (v == null)
+ *     v = emitter.newValue("IfcLabel", key);
+ * emitter.triple(s, attribute.property, v);
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class TripleEmitter {
+	private static final Node RDF_TYPE = RDF.type.asNode();
+	// entity Nodes kept, indexed by the low bits of the line number
+	private static final int CACHE_SIZE = 1 << 12;
+	// content addressed value Nodes kept
+	private static final int VALUE_CACHE_SIZE = 1 << 16;
+
+	private final TripleSink sink;
+	private final String baseURI;
+	private final StringBuilder iri = new StringBuilder(128);
+
+	private final long[] cachedLines = new long[CACHE_SIZE];
+	private final String[] cachedTypes = new String[CACHE_SIZE];
+	private final Node[] cachedNodes = new Node[CACHE_SIZE];
+
+	// number of the next value or list resource
+	private long nextId;
+	private long count = 0;
+	private Map<String, Node> values = new HashMap<String, Node>();
+	private String valueNamespace = null;
+
+	public TripleEmitter(TripleSink sink, String baseURI, long firstId) {
+		this.sink = sink;
+		this.baseURI = baseURI;
+		this.nextId = firstId;
+	}
+
+	/*
+	 * The Node of the entity on the given line, typeName is the name of its EntityVO
+	 */
+	public Node entity(String typeName, long line_num) {
+		int slot = (int) line_num & (CACHE_SIZE - 1);
+		// the names are the shared Strings of the EntityVO objects
+		if (cachedNodes[slot] != null && cachedLines[slot] == line_num && cachedTypes[slot] == typeName)
+			return cachedNodes[slot];
+		Node node = NodeFactory.createURI(instanceIRI(typeName, line_num));
+		cachedLines[slot] = line_num;
+		cachedTypes[slot] = typeName;
+		cachedNodes[slot] = node;
+		return node;
+	}
+
+	/*
+	 * Names the value resources by the hash of their key under the given namespace, instead of numbering them
+	 */
+	@SuppressWarnings("serial")
+	public void setValueNamespace(String valueNamespace) {
+		this.valueNamespace = valueNamespace;
+		this.values = new LinkedHashMap<String, Node>(VALUE_CACHE_SIZE, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Node> eldest) {
+				return size() > VALUE_CACHE_SIZE;
+			}
+		};
+	}
+
+	/*
+	 * Whether the value resources are named by their content, see setValueNamespace()
+	 */
+	boolean isContentAddressed() {
+		return valueNamespace != null;
+	}
+
+	/*
+	 * A new list resource, or any resource that is not shared
+	 */
+	public Node newResource(String typeName) {
+		return NodeFactory.createURI(instanceIRI(typeName, nextId++));
+	}
+
+	/*
+	 * The value resource created earlier with the given key, null when there is none yet
+	 */
+	public Node getValue(String key) {
+		return values.get(key);
+	}
+
+	/*
+	 * A new value resource, returned by getValue(key) from now on
+	 */
+	public Node newValue(String typeName, String key) {
+		Node node = valueNamespace == null ? newResource(typeName) : NodeFactory.createURI(valueNamespace + typeName + "_" + ContentHash.hex(key));
+		values.put(key, node);
+		return node;
+	}
+
+	public Node literal(String lexicalForm, RDFDatatype datatype) {
+		return NodeFactory.createLiteral(lexicalForm, datatype);
+	}
+
+	public void triple(Node subject, Node predicate, Node object) {
+		sink.triple(subject, predicate, object);
+		count++;
+	}
+
+	/*
+	 * The number of triples written so far
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/*
+	 * Writes the rdf:type triple, nothing when the ontology does not have the class
+	 */
+	public void type(Node subject, Node type) {
+		if (type != null)
+			triple(subject, RDF_TYPE, type);
+	}
+
+	private String instanceIRI(String typeName, long number) {
+		iri.setLength(0);
+		iri.append(baseURI).append(typeName).append('_').append(number);
+		return iri.toString();
+	}
+}
@@ -0,0 +1,33 @@
+package org.buildingsmart;
+
+import org.apache.jena.graph.Node;
+
+/*
+ * TripleSink is where the converters put the triples they produce. The subject, predicate and object are passed as
+ * Nodes, so a sink that does not need a Triple object does not have to build one.
+ *
+ * The usage:
+ * TripleSink sink = new StreamTripleSink(streamRDF);
+ * sink.triple(subject, predicate, object);
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public interface TripleSink {
+	void triple(Node subject, Node predicate, Node object);
+}
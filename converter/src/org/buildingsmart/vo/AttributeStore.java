@@ -0,0 +1,291 @@
+package org.buildingsmart.vo;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import org.buildingsmart.ContentHash;
+
+/*
+ * AttributeStore keeps the attribute tokens of many IFCVO objects in one packed long[] array instead of a LinkedList per entity.
+ * Each token is a long with the kind in the top 4 bits and a 60 bit payload:
+ *   STRING   offset of the token text in the byte arena (a varint length followed by the bytes)
+ *   REF      the line number of a '#id' reference
+ *   NULL     '$'
+ *   DERIVED  '*'
+ *   LIST     start of a nested list, the payload is the number of tokens inside the list
+ *   TYPED    the SymbolTable id of a type name in front of a nested list, as IFCLABEL in IFCLABEL('abc')
+ * The ',' separators are not stored. A StepTokenizer fills one store per range of the file, an IFCVO points to its range of tokens.
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class AttributeStore {
+	public static final int STRING = 1;
+	public static final int REF = 2;
+	public static final int NULL = 3;
+	public static final int DERIVED = 4;
+	public static final int LIST = 5;
+	public static final int TYPED = 6;
+
+	private static final int KIND_SHIFT = 60;
+	private static final long PAYLOAD_MASK = (1L << KIND_SHIFT) - 1;
+	// a tokenizer starts a new store before one of the arrays gets close to the maximum array size
+	private static final int MAX_TOKENS = 1 << 27;
+	private static final int MAX_ARENA = 1 << 30;
+
+	private final Charset charset;
+	private final SymbolTable symbols;
+	private long[] tokens = new long[1024];
+	private int tokenCount = 0;
+	private byte[] arena = new byte[4096];
+	private int arenaLength = 0;
+
+	public AttributeStore(Charset charset, SymbolTable symbols) {
+		this.charset = charset;
+		this.symbols = symbols;
+	}
+
+	/*
+	 * Number of tokens in the store, i.e. the index of the next token
+	 */
+	public int size() {
+		return tokenCount;
+	}
+
+	public boolean isFull() {
+		return tokenCount > MAX_TOKENS || arenaLength > MAX_ARENA;
+	}
+
+	public void addString(byte[] bytes, int from, int length) {
+		ensureArena(length + 5);
+		add(STRING, arenaLength);
+		int n = length;
+		while (n >= 0x80) {
+			arena[arenaLength++] = (byte) (n | 0x80);
+			n >>>= 7;
+		}
+		arena[arenaLength++] = (byte) n;
+		System.arraycopy(bytes, from, arena, arenaLength, length);
+		arenaLength += length;
+	}
+
+	public void addReference(long line_num) {
+		add(REF, line_num);
+	}
+
+	public void addTyped(int symbol) {
+		add(TYPED, symbol);
+	}
+
+	public void addNull() {
+		add(NULL, 0);
+	}
+
+	public void addDerived() {
+		add(DERIVED, 0);
+	}
+
+	/*
+	 * Starts a nested list and returns its index for closeList()
+	 */
+	public int openList() {
+		add(LIST, 0);
+		return tokenCount - 1;
+	}
+
+	public void closeList(int index) {
+		tokens[index] = ((long) LIST << KIND_SHIFT) | (tokenCount - index - 1);
+	}
+
+	/*
+	 * Drops all tokens, for a tokenizer that hands out one entity at a time
+	 */
+	public void clear() {
+		tokenCount = 0;
+		arenaLength = 0;
+	}
+
+	public void trimToSize() {
+		tokens = Arrays.copyOf(tokens, tokenCount);
+		arena = Arrays.copyOf(arena, arenaLength);
+	}
+
+	public int kind(int index) {
+		return (int) (tokens[index] >>> KIND_SHIFT);
+	}
+
+	public int symbol(int index) {
+		return (int) (tokens[index] & PAYLOAD_MASK);
+	}
+
+	public long reference(int index) {
+		return tokens[index] & PAYLOAD_MASK;
+	}
+
+	/*
+	 * Number of tokens inside the list that starts at index
+	 */
+	public int listLength(int index) {
+		return (int) (tokens[index] & PAYLOAD_MASK);
+	}
+
+	public String string(int index) {
+		int offset = (int) (tokens[index] & PAYLOAD_MASK);
+		int length = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = arena[offset++];
+			length |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return new String(arena, offset, length, charset);
+	}
+
+	/*
+	 * Builds the list form of the tokens [from, to) as the former line parser produced it: Strings with "#id" references,
+	 * "$" and "*", and a LinkedList for every nested list. A type name is given as its TypeVO, or as a String when the
+	 * schema does not know it.
+	 */
+	public LinkedList<Object> toObjectList(int from, int to) {
+		LinkedList<Object> list = new LinkedList<Object>();
+		for (int i = from; i < to; i = next(i)) {
+			switch (kind(i)) {
+			case STRING:
+				list.add(string(i));
+				break;
+			case REF:
+				list.add("#" + reference(i));
+				break;
+			case NULL:
+				list.add("$");
+				break;
+			case DERIVED:
+				list.add("*");
+				break;
+			case TYPED:
+				TypeVO type = symbols.getType(symbol(i));
+				list.add(type != null ? type : symbols.getName(symbol(i)));
+				break;
+			case LIST:
+				list.add(toObjectList(i + 1, i + 1 + listLength(i)));
+				break;
+			}
+		}
+		return list;
+	}
+
+	/*
+	 * Index of the token of the n-th attribute in [from, to), or -1. A typed value, the type name and its list, is one
+	 * attribute and its index is that of the type name. It does not need the SymbolTable to be bound.
+	 */
+	public int attribute(int from, int to, int n) {
+		for (int i = from; i < to; i = next(i)) {
+			if (n == 0)
+				return i;
+			if (kind(i) == TYPED)
+				i = next(i);
+			n--;
+		}
+		return -1;
+	}
+
+	/*
+	 * Index of the token after the one at index, skipping the tokens inside a list
+	 */
+	public int next(int index) {
+		return kind(index) == LIST ? index + 1 + listLength(index) : index + 1;
+	}
+
+	/*
+	 * 128 bit hash of the tokens [from, to) into result[0] and result[1], with every reference counted as the same token.
+	 * Two ranges with the same hash differ at most in the line numbers of their references, see copyReferences().
+	 */
+	public void structureFingerprint(long seed, int from, int to, long[] result) {
+		long h1 = seed;
+		long h2 = seed;
+		for (int i = from; i < to; i++) {
+			long k;
+			if (kind(i) == STRING) {
+				int offset = (int) (tokens[i] & PAYLOAD_MASK);
+				int end = offset + stringBytes(offset);
+				k = (long) STRING << KIND_SHIFT;
+				for (int n = offset; n < end; n++) {
+					k = (k << 8) | (arena[n] & 0xFF);
+					// eight bytes per word, the length prefix keeps the words of different strings apart
+					if (((n - offset) & 7) == 7) {
+						h1 = ContentHash.mix1(h1, k);
+						h2 = ContentHash.mix2(h2, k);
+						k = 0;
+					}
+				}
+			} else if (kind(i) == REF)
+				k = (long) REF << KIND_SHIFT;
+			else
+				k = tokens[i];
+			h1 = ContentHash.mix1(h1, k);
+			h2 = ContentHash.mix2(h2, k);
+		}
+		h1 ^= to - from;
+		h2 ^= to - from;
+		h1 += h2;
+		h2 += h1;
+		h1 = ContentHash.fmix(h1);
+		h2 = ContentHash.fmix(h2);
+		result[0] = h1 + h2;
+		result[1] = h2 + h1 + h2;
+	}
+
+	/*
+	 * Copies the line numbers of the references in [from, to) into dest from offset on, in token order, and returns how
+	 * many there are. dest needs room for to - from numbers.
+	 */
+	public int copyReferences(int from, int to, long[] dest, int offset) {
+		int n = offset;
+		for (int i = from; i < to; i++)
+			if (kind(i) == REF)
+				dest[n++] = reference(i);
+		return n - offset;
+	}
+
+	// the arena bytes of a string token including the length prefix
+	private int stringBytes(int offset) {
+		int length = 0;
+		int shift = 0;
+		int prefix = 0;
+		byte b;
+		do {
+			b = arena[offset + prefix++];
+			length |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return prefix + length;
+	}
+
+	private void add(int kind, long payload) {
+		if (tokenCount == tokens.length)
+			tokens = Arrays.copyOf(tokens, tokens.length * 2);
+		tokens[tokenCount++] = ((long) kind << KIND_SHIFT) | payload;
+	}
+
+	private void ensureArena(int extra) {
+		if (arenaLength + extra > arena.length)
+			arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaLength + extra));
+	}
+}
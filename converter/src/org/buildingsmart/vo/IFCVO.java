@@ -4,6 +4,8 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 
+import org.buildingsmart.ContentHash;
+
 /*
  * class used for parsing an IFC instance model
  * 
@@ -30,53 +32,103 @@ import java.util.Map;
 
 public class IFCVO {
 	
-    private Long line_num ;	
-	private String fullLineAfterNum;
+    private long line_num ;
     private String name = null;
-	private LinkedList<Object> list = new LinkedList<Object>();	
-	private Map<String,LinkedList<IFCVO>> inverse_pointer_sets = new HashMap<String,LinkedList<IFCVO>>();
+	// SymbolTable id of the name
+	private int type = -1;
+	// the attributes are the tokens [attributesFrom, attributesTo) of a shared AttributeStore
+	private AttributeStore store = null;
+	private int attributesFrom = 0;
+	private int attributesTo = 0;
+	private Map<String,LinkedList<IFCVO>> inverse_pointer_sets = null;
 
 
 	public IFCVO() {}
-	
-	
-	public String getFullLineAfterNum() {
-		return fullLineAfterNum;
-	}
 
-	public void setFullLineAfterNum(String fullLineAfterNum) {
-		this.fullLineAfterNum = fullLineAfterNum;
-	}
-	
-	public Long getLine_num() {
+	public long getLine_num() {
 		return line_num;
 	}
-	
-	public void setLine_num(Long line_num) {
+
+	public void setLine_num(long line_num) {
 		this.line_num = line_num;
 	}
-	
+
 	public String getName() {
 		return name;
 	}
-	
+
 	public void setName(String name) {
 		this.name = name;
 	}
-	
+
+	public int getType() {
+		return type;
+	}
+
+	public void setType(int type) {
+		this.type = type;
+	}
+
+	public void setAttributes(AttributeStore store, int from, int to) {
+		this.store = store;
+		this.attributesFrom = from;
+		this.attributesTo = to;
+	}
+
+	public AttributeStore getAttributeStore() {
+		return store;
+	}
+
+	public int getAttributesFrom() {
+		return attributesFrom;
+	}
+
+	public int getAttributesTo() {
+		return attributesTo;
+	}
+
+	/*
+	 * Builds a new list of the attributes. References are "#id" Strings, the caller resolves them.
+	 */
 	public LinkedList<Object> getObjectList() {
-		return list;
+		if (store == null)
+			return new LinkedList<Object>();
+		return store.toObjectList(attributesFrom, attributesTo);
 	}
-	
-	public void setList(LinkedList<Object> list) {
-		this.list = list;
+
+	/*
+	 * 128 bit hash of the entity type and the attribute tokens, the references counted as one token. Two entities with the
+	 * same fingerprint and the same references, see copyReferences(), are the same line after the '#id='.
+	 */
+	public void structureFingerprint(long[] result) {
+		// the SymbolTable id, unlike a hash of the name two types never share it
+		long seed = type;
+		if (store == null) {
+			result[0] = ContentHash.fmix(seed);
+			result[1] = ContentHash.fmix(~seed);
+			return;
+		}
+		store.structureFingerprint(seed, attributesFrom, attributesTo, result);
 	}
-	
+
+	/*
+	 * The line numbers of the references, see AttributeStore.copyReferences()
+	 */
+	public int copyReferences(long[] dest, int offset) {
+		return store == null ? 0 : store.copyReferences(attributesFrom, attributesTo, dest, offset);
+	}
+
+	public int getAttributeTokenCount() {
+		return attributesTo - attributesFrom;
+	}
+
 	public Map<String,LinkedList<IFCVO>> getInverse_pointer_sets() {
+		if (inverse_pointer_sets == null)
+			inverse_pointer_sets = new HashMap<String,LinkedList<IFCVO>>();
 		return inverse_pointer_sets;
 	}
 
 	public void setInverse_pointer_sets(Map<String,LinkedList<IFCVO>> inverse_pointer_sets) {
 		this.inverse_pointer_sets = inverse_pointer_sets;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,90 @@
+package org.buildingsmart.vo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.buildingsmart.ExpressReader;
+
+/*
+ * SymbolTable gives every STEP type name of a conversion (entity names such as IFCCARTESIANPOINT and typed values such
+ * as IFCLABEL) a small integer id. The tokenizers intern the names while parsing, and after the parse bind() resolves
+ * every id once to its EntityVO or TypeVO, so the converter finds them with an array access instead of a string lookup.
+ *
+ * The usage:
+ * SymbolTable symbols = new SymbolTable();
+ * int id = symbols.intern("IFCCARTESIANPOINT");  // while parsing, thread-safe
+ * symbols.bind(ent, typ);                        // after parsing
+ * EntityVO evo = symbols.getEntity(id);
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class SymbolTable {
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private volatile String[] names = new String[256];
+	private int count = 0;
+
+	private EntityVO[] entities = new EntityVO[0];
+	private TypeVO[] types = new TypeVO[0];
+
+	public synchronized int intern(String name) {
+		Integer id = ids.get(name);
+		if (id != null)
+			return id;
+		String[] current = names;
+		if (count == current.length)
+			current = Arrays.copyOf(current, count * 2);
+		current[count] = name;
+		names = current;
+		ids.put(name, count);
+		return count++;
+	}
+
+	public synchronized int size() {
+		return count;
+	}
+
+	/*
+	 * The name as it was written in the IFC file
+	 */
+	public String getName(int id) {
+		return names[id];
+	}
+
+	/*
+	 * Resolves all names interned so far against the entities and types of the schema
+	 */
+	public synchronized void bind(Map<String, EntityVO> ent, Map<String, TypeVO> typ) {
+		entities = new EntityVO[count];
+		types = new TypeVO[count];
+		for (int id = 0; id < count; id++) {
+			String formatted = ExpressReader.formatClassName(names[id]);
+			entities[id] = ent.get(formatted);
+			types[id] = typ.get(formatted);
+		}
+	}
+
+	public EntityVO getEntity(int id) {
+		return id < entities.length ? entities[id] : null;
+	}
+
+	public TypeVO getType(int id) {
+		return id < types.length ? types[id] : null;
+	}
+}
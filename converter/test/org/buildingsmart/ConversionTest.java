@@ -0,0 +1,114 @@
+package org.buildingsmart;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.jena.rdf.model.Model;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/*
+ * ConversionTest converts the small wall model of wall.ifc with the streaming converter. The output must be the same
+ * byte for byte whether the instances are written on one thread or on several with -deterministic, and from one run to
+ * the next. The HDT, RDF Thrift and gzip files must read back as the same graph as the Turtle file.
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class ConversionTest {
+	// the resources of every run are named alike, DEFAULT_PATH has the time of the run in it
+	private static final String BASE_URI = "http://linkedbuildingdata.net/ifc/resources/test/";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void parallelIsSerial() throws Exception {
+		byte[] serial = read(convert("serial.ttl"));
+		assertArrayEquals(serial, read(convert("emit.ttl", "-parallelEmit", "-deterministic", "-threads", "4")));
+		assertArrayEquals(serial, read(convert("parse.ttl", "-parallelParse", "-parallelEmit", "-deterministic", "-threads", "4")));
+		// also when the value resources are named by their content
+		assertArrayEquals(read(convert("content.ttl", "-contentIRIs")), read(convert("contentEmit.ttl", "-contentIRIs", "-parallelEmit", "-deterministic", "-threads", "4")));
+	}
+
+	@Test
+	public void deterministic() throws Exception {
+		byte[] first = read(convert("first.ttl", "-parallelEmit", "-deterministic", "-threads", "4"));
+		for (int run = 0; run < 3; run++)
+			assertArrayEquals(first, read(convert("run" + run + ".ttl", "-parallelEmit", "-deterministic", "-threads", "4")));
+	}
+
+	@Test
+	public void hdt() throws Exception {
+		Model model = IfcReader.readModel(convert("model.ttl"));
+		assertTrue(model.size() > 0);
+		assertTrue(model.isIsomorphicWith(IfcReader.readModel(convert("model.ttl", "-hdt"))));
+		assertTrue(model.isIsomorphicWith(IfcReader.readModel(convert("model.ttl", "-hdt", "-gzip"))));
+	}
+
+	@Test
+	public void thrift() throws Exception {
+		Model model = IfcReader.readModel(convert("model.ttl"));
+		assertTrue(model.isIsomorphicWith(IfcReader.readModel(convert("model.ttl", "-thrift"))));
+	}
+
+	@Test
+	public void gzip() throws Exception {
+		byte[] plain = read(convert("plain.ttl"));
+		assertArrayEquals(plain, read(convert("packed.ttl", "-gzip")));
+		assertArrayEquals(plain, read(convert("threads.ttl", "-gzip", "-threads", "4")));
+	}
+
+	/*
+	 * Converts wall.ifc into the folder and returns the name of the file that was written
+	 */
+	private String convert(String name, String... flags) throws Exception {
+		ConversionOptions options = new ConversionOptions();
+		options.parseArguments(flags);
+		IfcReaderStream reader = new IfcReaderStream();
+		reader.setOptions(options);
+		String output = new File(folder.getRoot(), name).getPath();
+		reader.convert(new File(ConversionTest.class.getResource("wall.ifc").toURI()).getPath(), output, BASE_URI);
+		return ParallelGzipOutputStream.fileName(IfcReader.outputFileName(output, options), options.isGzip());
+	}
+
+	// the bytes of the file, unpacked when it ends with .gz
+	private static byte[] read(String file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		if (file.endsWith(".gz"))
+			in = new GZIPInputStream(in);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1 << 16];
+			int length;
+			while ((length = in.read(buffer)) > 0)
+				out.write(buffer, 0, length);
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+}
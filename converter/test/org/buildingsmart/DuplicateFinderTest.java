@@ -0,0 +1,88 @@
+package org.buildingsmart;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.buildingsmart.vo.IFCVO;
+import org.buildingsmart.vo.SymbolTable;
+import org.junit.Test;
+
+/*
+ * DuplicateFinderTest checks which lines are merged: equal lines in the first round, and with a structural search the
+ * lines that become equal once their references count as the kept lines.
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class DuplicateFinderTest {
+	// #2 is #1, #5 is #4 once #2 is #1, #6 has its references in another order and #7 another string
+	private static final String DATA = "#1=IFCCARTESIANPOINT((0.,0.,0.));\n"
+			+ "#2=IFCCARTESIANPOINT((0.,0.,0.));\n"
+			+ "#3=IFCCARTESIANPOINT((1.,0.,0.));\n"
+			+ "#4=IFCPOLYLOOP((#1,#3));\n"
+			+ "#5=IFCPOLYLOOP((#2,#3));\n"
+			+ "#6=IFCPOLYLOOP((#3,#1));\n"
+			+ "#7=IFCLABEL('a');\n"
+			+ "#8=IFCLABEL('b');\n";
+
+	@Test
+	public void equalLines() throws IOException {
+		DuplicateFinder finder = find();
+		assertEquals(1, finder.resolve(false));
+		assertEquals(1, finder.getCanonical(2));
+		assertEquals(5, finder.getCanonical(5));
+		assertEquals(8, finder.getCanonical(8));
+		assertArrayEquals(new long[] { 1, 1 }, finder.getMergedCounts());
+	}
+
+	@Test
+	public void structuralDuplicates() throws IOException {
+		DuplicateFinder finder = find();
+		assertEquals(2, finder.resolve(true));
+		assertEquals(1, finder.getCanonical(2));
+		assertEquals(4, finder.getCanonical(5));
+		assertEquals(6, finder.getCanonical(6));
+		// the second round finds #5, the third nothing new
+		assertEquals(3, finder.getRounds());
+		long[] merged = finder.getMergedCounts();
+		assertArrayEquals(new long[] { 1, 1, 4, 1 }, merged);
+		assertEquals(1, DuplicateFinder.duplicatesOf(merged, 4));
+		assertEquals(0, DuplicateFinder.duplicatesOf(merged, 3));
+	}
+
+	@Test
+	public void unknownLine() throws IOException {
+		DuplicateFinder finder = find();
+		finder.resolve(true);
+		assertEquals(42, finder.getCanonical(42));
+	}
+
+	private static DuplicateFinder find() throws IOException {
+		StepTokenizer tokenizer = new StepTokenizer(ByteBuffer.wrap(DATA.getBytes(Charset.forName("UTF-8"))), new SymbolTable());
+		DuplicateFinder finder = new DuplicateFinder();
+		IFCVO vo;
+		while ((vo = tokenizer.nextEntity()) != null)
+			finder.add(vo);
+		tokenizer.close();
+		return finder;
+	}
+}
@@ -0,0 +1,106 @@
+package org.buildingsmart;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.buildingsmart.vo.AttributeStore;
+import org.buildingsmart.vo.IFCVO;
+import org.buildingsmart.vo.SymbolTable;
+import org.junit.Test;
+
+/*
+ * StepTokenizerTest checks the statements that are easy to get wrong: quotes written twice inside a string, a ';' or a
+ * quote inside a string or a comment, and names and strings that do not fit the 256 bytes the tokenizer starts with.
+ */
+
+/*
+ * The GNU Affero General Public License
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+public class StepTokenizerTest {
+	private final SymbolTable symbols = new SymbolTable();
+
+	@Test
+	public void escapedQuotes() throws IOException {
+		List<IFCVO> lines = tokenize("#1=IFCPERSON($,'It''s; (odd)','John',$);\n#2=IFCDIRECTION((1.,0.,0.));\n");
+		assertEquals(2, lines.size());
+		assertEquals("'It's; (odd)", string(lines.get(0), 1));
+		assertEquals("'John", string(lines.get(0), 2));
+		assertEquals(2, lines.get(1).getLine_num());
+	}
+
+	@Test
+	public void comments() throws IOException {
+		List<IFCVO> lines = tokenize("/* the wall's; #3=IFCWALL(); */\n#4=IFCDIRECTION((0.,1.,0.));\n/* 'a */ /* b' */#5=IFCDIRECTION((0.,0.,1.));\n");
+		assertEquals(2, lines.size());
+		assertEquals(4, lines.get(0).getLine_num());
+		assertEquals(5, lines.get(1).getLine_num());
+		assertEquals("IFCDIRECTION", lines.get(1).getName());
+	}
+
+	@Test
+	public void longNames() throws IOException {
+		StringBuilder keyword = new StringBuilder("IFC");
+		StringBuilder text = new StringBuilder("'");
+		for (int i = 0; i < 300; i++) {
+			keyword.append((char) ('A' + i % 26));
+			text.append((char) ('a' + i % 26));
+		}
+		List<IFCVO> lines = tokenize("#1=" + keyword + "(" + text + "',#2);\n#2=" + keyword + "(" + keyword + "(1.),$);\n");
+		assertEquals(2, lines.size());
+		assertEquals(keyword.toString(), lines.get(0).getName());
+		assertEquals(text.toString(), string(lines.get(0), 0));
+		IFCVO second = lines.get(1);
+		AttributeStore store = second.getAttributeStore();
+		int typed = store.attribute(second.getAttributesFrom(), second.getAttributesTo(), 0);
+		assertEquals(AttributeStore.TYPED, store.kind(typed));
+		assertEquals(keyword.toString(), symbols.getName(store.symbol(typed)));
+		assertEquals(AttributeStore.NULL, store.kind(store.attribute(second.getAttributesFrom(), second.getAttributesTo(), 1)));
+	}
+
+	@Test
+	public void incompleteStatement() throws IOException {
+		StepTokenizer tokenizer = new StepTokenizer(ByteBuffer.wrap("#1=IFCDIRECTION((1.,0.,0.));\n#2=IFCDIRECTION((".getBytes(Charset.forName("UTF-8"))), symbols);
+		assertEquals(1, tokenizer.nextEntity().getLine_num());
+		assertNull(tokenizer.nextEntity());
+		assertFalse(tokenizer.isComplete());
+	}
+
+	private List<IFCVO> tokenize(String data) throws IOException {
+		StepTokenizer tokenizer = new StepTokenizer(ByteBuffer.wrap(data.getBytes(Charset.forName("UTF-8"))), symbols);
+		List<IFCVO> lines = new ArrayList<IFCVO>();
+		IFCVO vo;
+		while ((vo = tokenizer.nextEntity()) != null)
+			lines.add(vo);
+		tokenizer.close();
+		return lines;
+	}
+
+	// the n-th attribute of a line as the tokenizer keeps a string: with its opening quote, and '' as one quote
+	private static String string(IFCVO vo, int n) {
+		AttributeStore store = vo.getAttributeStore();
+		int index = store.attribute(vo.getAttributesFrom(), vo.getAttributesTo(), n);
+		assertEquals(AttributeStore.STRING, store.kind(index));
+		return store.string(index);
+	}
+}